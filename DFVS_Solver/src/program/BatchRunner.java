@@ -0,0 +1,96 @@
+package program;
+
+import program.algo.Solver;
+import program.algo.SolverContext;
+import program.log.Log;
+import program.model.GraphFile;
+import program.model.Instance;
+import program.utils.EdgeListParser;
+import program.utils.InstanceCreator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Solves many files on several worker threads, every file with its own context & deadline.
+ * The files start in the order of their predicted work, the largest first, so a slow instance doesn't start last
+ * and keep one core busy while the others are idle. The rows of the csv logs are written by one writer thread.
+ */
+public abstract class BatchRunner {
+
+    private static final Pattern N_PATTERN = Pattern.compile("n_(\\d+)");
+    private static final Pattern M_PATTERN = Pattern.compile("m_(\\d+)");
+
+    /**
+     * @param files The files to solve.
+     * @param threads The number of files solved at the same time.
+     * @param timeoutSeconds The deadline of every file.
+     */
+    public static void run(List<GraphFile> files, int threads, long timeoutSeconds) {
+        Map<GraphFile, Double> work = new HashMap<>();
+        for (GraphFile file : files) work.put(file, predictWork(file));
+        List<GraphFile> order = new ArrayList<>(files);
+        order.sort(Comparator.comparingDouble((GraphFile file) -> work.get(file)).reversed());
+
+        Log.startWriter();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (GraphFile file : order) {
+            workers.execute(() -> {
+                try {
+                    Instance instance = InstanceCreator.createFromCache(file);
+                    Solver.dfvsSolveInstance(new SolverContext(instance, 1, timeoutSeconds));
+                } catch (RuntimeException e) {
+                    Log.debugLog(file.name, "Failed: " + e, true);
+                }
+            });
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Log.stopWriter();
+        }
+    }
+
+    /**
+     * Predicts the work as m * average degree (m^2 / n), denser graphs have more and longer cycles to branch on. The
+     * density m / n^2 isn't used on its own, for the same n it grows with m like the average degree.
+     * n and m are taken from the file name (e.g. "synth-n_100-m_732-..."), a missing m is estimated by the line count
+     * and a missing n is counted by a quick scan of the ids, the file is never parsed into a graph.
+     */
+    static double predictWork(GraphFile file) {
+        Path path = Paths.get(file.path + file.name);
+        long n = parse(N_PATTERN, file.name);
+        long m = parse(M_PATTERN, file.name);
+        try {
+            if (n == -1) {
+                int[] size = EdgeListParser.scan(path);
+                m = size[0];
+                n = size[1];
+            } else if (m == -1) {
+                m = EdgeListParser.countLines(path);
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+        return (double) m * m / Math.max(n, 1);
+    }
+
+    private static long parse(Pattern pattern, String name) {
+        Matcher matcher = pattern.matcher(name);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,232 @@
+package program;
+
+import program.algo.LocalSearchSolver;
+import program.algo.Solver;
+import program.algo.SolverContext;
+import program.log.Log;
+import program.model.Instance;
+import program.utils.InstanceCreator;
+import program.utils.Timer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long running solver process on a localhost TCP port, so many small instances don't pay for the JVM start and the
+ * JIT warm up each. One connection is one request: the first line holds the options, the rest is the edge list until
+ * the client shuts down its output. The response is the solution like in Main, one id per line.
+ * Options are "key=value" pairs separated by spaces: timeout (seconds), parallelism, mode (exact or sa).
+ * The request line "stats" returns the number of requests (and of the failed ones), requests/s and the p50/p99 latency
+ * instead.
+ * The request line is read on the accept thread, so "stats" is answered right away. The requests are solved by a fixed
+ * number of workers, further ones wait in a bounded queue. When the queue is full, the request is answered with
+ * "#error busy" right away.
+ * A client has to send the request line within a second and the edge list within the timeout of the request, else
+ * the connection is closed. So a stalled client can't hold a worker.
+ */
+public class Daemon {
+
+    private static final int LATENCY_WINDOW = 1024; // Latencies of the last requests, for the percentiles
+    private static final long REQUEST_LINE_MILLIS = 1000;
+
+    private final ThreadPoolExecutor workers;
+    private final ForkJoinPool pool; // Shared by the parallel solves
+
+    // Stats
+    private final long startTime = System.nanoTime();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencyCount = 0;
+
+    private Daemon(int workerCount, int queueSize) {
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Accepts requests until the process is stopped.
+     * @param port The localhost port.
+     * @param workerCount The number of requests solved at the same time.
+     * @param queueSize The number of requests which may wait for a worker.
+     */
+    public static void run(int port, int workerCount, int queueSize) throws IOException {
+        Log.ignore = true;
+        Daemon daemon = new Daemon(workerCount, queueSize);
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Listening on " + server.getLocalSocketAddress() + " with " + workerCount + " worker(s)");
+            while (true) {
+                Socket socket = server.accept();
+                daemon.accept(socket, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Reads the request line, then answers "stats" or passes the request to a worker.
+     */
+    private void accept(Socket socket, long acceptTime) {
+        DeadlineInputStream deadlineIn;
+        InputStream in;
+        String requestLine;
+        try {
+            deadlineIn = new DeadlineInputStream(socket, acceptTime + REQUEST_LINE_MILLIS * 1000000);
+            in = new BufferedInputStream(deadlineIn, 1 << 16);
+            requestLine = readLine(in);
+        } catch (IOException e) {
+            close(socket);
+            return;
+        }
+
+        if (requestLine.trim().equals("stats")) {
+            try (Socket client = socket) {
+                PrintStream out = new PrintStream(new BufferedOutputStream(client.getOutputStream()), false);
+                printStats(out);
+                out.flush();
+            } catch (IOException ignored) {}
+            return;
+        }
+
+        try {
+            workers.execute(() -> handle(socket, deadlineIn, in, requestLine, acceptTime));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            try (Socket busy = socket) {
+                busy.getOutputStream().write("#error busy\n".getBytes());
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void handle(Socket socket, DeadlineInputStream deadlineIn, InputStream in, String requestLine, long acceptTime) {
+        requests.incrementAndGet();
+        try (Socket client = socket) {
+            PrintStream out = new PrintStream(new BufferedOutputStream(client.getOutputStream(), 1 << 16), false);
+            try {
+                solve(requestLine, deadlineIn, in, out, acceptTime);
+                out.flush();
+                recordLatency(System.nanoTime() - acceptTime);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                out.println("#error " + e.getMessage());
+            }
+            out.flush();
+        } catch (IOException ignored) {}
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void solve(String requestLine, DeadlineInputStream deadlineIn, InputStream in, PrintStream out, long acceptTime) {
+        String[] options = requestLine.trim().split("\\s+");
+        long timeout = Timer.timeout;
+        int parallelism = 1;
+        boolean localSearch = false;
+        for (String option : options) {
+            if (option.isEmpty()) continue;
+            String[] pair = option.split("=", 2);
+            if (pair.length < 2) throw new IllegalArgumentException("Invalid option '" + option + "'");
+            switch (pair[0]) {
+                case "timeout": timeout = Long.parseLong(pair[1]); break;
+                case "parallelism": parallelism = Integer.parseInt(pair[1]); break;
+                case "mode": localSearch = pair[1].equals("sa"); break;
+                default: throw new IllegalArgumentException("Unknown option '" + pair[0] + "'");
+            }
+        }
+
+        // The edge list has to arrive within the timeout, then the solve gets its own context & deadline. The parallel
+        // searches share the pool of the daemon
+        deadlineIn.deadline = acceptTime + timeout * 1000000000L;
+        Instance instance = InstanceCreator.createFromStream(in, "request");
+        SolverContext context = new SolverContext(instance, parallelism, timeout);
+        context.sharedPool = pool;
+        if (localSearch) LocalSearchSolver.solveInstance(context);
+        else Solver.dfvsSolveInstance(context);
+
+        for (Integer nodeId : instance.S) {
+            out.println(nodeId);
+        }
+        out.println("#recursive steps: " + instance.recursiveSteps);
+    }
+
+    /**
+     * Reads the bytes up to the next line break, the stream is left at the start of the next line.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') line.append((char) b);
+        return line.toString();
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = nanos;
+    }
+
+    private synchronized void printStats(PrintStream out) {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long[] window = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW));
+        Arrays.sort(window);
+        out.println("requests: " + requests.get() + ", failed: " + failed.get() + ", rejected: " + rejected.get() + ", queued: " + workers.getQueue().size());
+        out.printf("requests/s: %.2f%n", requests.get() / seconds);
+        out.println("p50: " + percentile(window, 50) + " ms, p99: " + percentile(window, 99) + " ms");
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percent / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Socket input which fails once the deadline passed, so a client can't stall a read. Before every read the socket
+     * timeout is set to the time left.
+     */
+    private static class DeadlineInputStream extends FilterInputStream {
+
+        private final Socket socket;
+        private volatile long deadline; // In System.nanoTime()
+
+        private DeadlineInputStream(Socket socket, long deadline) throws IOException {
+            super(socket.getInputStream());
+            this.socket = socket;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            setTimeout();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            setTimeout();
+            return super.read(b, off, len);
+        }
+
+        private void setTimeout() throws IOException {
+            long millis = (deadline - System.nanoTime()) / 1000000;
+            if (millis <= 0) throw new SocketTimeoutException("The request wasn't read within its timeout");
+            socket.setSoTimeout((int) Math.min(millis, Integer.MAX_VALUE));
+        }
+    }
+}
@@ -4,34 +4,77 @@ import program.algo.*;
 import program.log.Log;
 import program.model.*;
 import program.utils.InstanceCreator;
+import program.utils.Timer;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.List;
 
 public class Main {
 
     public static void main(String[] args) {
 
-        if(args.length > 0){
+        if(args.length > 0 && args[0].equals("--daemon")){
+
+            // Daemon mode: --daemon [port] [workers] [queue size]
+            int port = (args.length > 1) ? Integer.parseInt(args[1]) : 4711;
+            int workers = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            int queueSize = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+            try {
+                Daemon.run(port, workers, queueSize);
+            } catch (IOException e) {
+                throw new RuntimeException("Daemon stopped", e);
+            }
+        } else if(args.length > 0 && args[0].equals("--batch")){
+
+            // Batch mode: --batch [threads] [timeout], solves all files of the dataset in parallel
+            int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            long timeout = (args.length > 2) ? Long.parseLong(args[2]) : Timer.timeout;
+            Log.Clear();
+            Log.ignore = false;
+            BatchRunner.run(InstanceCreator.getComplexAndSyntheticFiles(null), threads, timeout);
+        } else if(args.length > 0){
 
             // Ignore Log
             Log.ignore = true;
 
-            // Path
+            // Path, or "-" to read the graph from standard input
             String fileName = args[0];
 
+            // Optional number of threads for the branching
+            int parallelism = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+
+            // Optional solve mode: "exact" (default) or "sa" for the local search on large instances
+            boolean localSearch = args.length > 2 && args[2].equals("sa");
+
             // Create instance
-            Instance instance = InstanceCreator.createFromFile(new GraphFile("", fileName));
+            Instance instance = fileName.equals("-")
+                    ? InstanceCreator.createFromStream(System.in, "stdin")
+                    : InstanceCreator.createFromFile(new GraphFile("", fileName));
 
             // Solve
-            Solver.dfvsSolveInstance(instance);
+            if(localSearch) LocalSearchSolver.solveInstance(new SolverContext(instance, parallelism));
+            else Solver.dfvsSolveInstance(new SolverContext(instance, parallelism));
 
-            // Print solution
+            // Print solution, all lines go through one buffer and are flushed at the end
+            PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
             for(Integer nodeId : instance.S){
-                System.out.println(nodeId);
+                out.println(nodeId);
             }
 
             // Print recursive steps
-            System.out.println("#recursive steps: " + instance.recursiveSteps);
+            out.println("#recursive steps: " + instance.recursiveSteps);
+
+            // Print the solution size over time
+            if(localSearch) {
+                for(long[] solutionSize : instance.solutionSizes) {
+                    out.println("#k = " + solutionSize[1] + " after " + solutionSize[0] + " ms");
+                }
+            }
+            out.flush();
         } else {
 
             //Reset Log
@@ -45,9 +88,15 @@ public class Main {
 
             List<GraphFile> files = InstanceCreator.getComplexAndSyntheticFiles(null);
             for(GraphFile file: files) {
-                Instance instance = InstanceCreator.createFromFile(file);
+                Instance instance = InstanceCreator.createFromCache(file);
                 Solver.dfvsSolveInstance(instance);
             }
+
+            //Local search on the instances which are too large for the exact solver
+            //for(GraphFile file: InstanceCreator.getLargeFiles()) {
+            //    Instance instance = InstanceCreator.createFromFile(file);
+            //    LocalSearchSolver.solveInstance(new SolverContext(instance));
+            //}
         }
     }
 
@@ -0,0 +1,89 @@
+package program.algo;
+
+import program.model.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Scratch state of a BFS, reused by all searches of a thread. A node is visited if its stamp is the one of the current
+ * search, so a new search starts without clearing the arrays and only touches the nodes it reaches.
+ * Every node is queued at most once per search, so the queue is a plain array of the capacity.
+ */
+class BFSWorkspace {
+
+    private static final ThreadLocal<BFSWorkspace> workspaces = ThreadLocal.withInitial(BFSWorkspace::new);
+
+    private int[] stamps = new int[0];
+    private int stamp = 0;
+    private int[] parents = new int[0];
+    private int[] depths = new int[0];
+    private int[] queue = new int[0];
+    private int head;
+    private int tail;
+
+    // Buffer for the neighbors of the current node
+    int[] buffer = new int[0];
+
+    /**
+     * @return The workspace of the thread, large enough for the graph.
+     */
+    static BFSWorkspace get(Graph graph) {
+        BFSWorkspace workspace = workspaces.get();
+        int n = graph.getCapacity();
+        if(workspace.stamps.length < n) {
+            workspace.stamps = new int[n];
+            workspace.parents = new int[n];
+            workspace.depths = new int[n];
+            workspace.queue = new int[n];
+            workspace.buffer = new int[n];
+        }
+        return workspace;
+    }
+
+    /**
+     * Starts a new search, with the root as the only queued node.
+     */
+    void start(int root) {
+        if(++stamp == 0) {
+            // The stamps wrapped around, old stamps could look current
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        head = 0;
+        tail = 0;
+        stamps[root] = stamp;
+        parents[root] = -1;
+        depths[root] = 0;
+        queue[tail++] = root;
+    }
+
+    boolean hasNext() {
+        return head < tail;
+    }
+
+    int next() {
+        return queue[head++];
+    }
+
+    boolean isVisited(int v) {
+        return stamps[v] == stamp;
+    }
+
+    /**
+     * Marks the node as visited from the parent and queues it.
+     */
+    void visit(int v, int parent) {
+        stamps[v] = stamp;
+        parents[v] = parent;
+        depths[v] = depths[parent] + 1;
+        queue[tail++] = v;
+    }
+
+    int getParent(int v) {
+        return parents[v];
+    }
+
+    int getDepth(int v) {
+        return depths[v];
+    }
+}
@@ -0,0 +1,288 @@
+package program.algo;
+
+import program.model.Cycle;
+import program.model.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Bit parallel BFS from 64 roots at once: every node has a word of the roots which reached it, so one pass over the
+ * arcs of a level moves the frontiers of all 64 roots. A root has its shortest cycle at the first level, at which an
+ * arc of its frontier leads back to it. The roots which found their cycle leave the frontier, so the later levels only
+ * expand the others.
+ * Only the lengths are computed, the cycles are built with a normal BFS for the nodes which need them.
+ */
+public abstract class BitBFS {
+
+    /**
+     * Like FullBFS without 2-cycles, but the cycle is built only for the chosen node: the girth comes from one bit
+     * parallel sweep, then the node which lies on the most shortest cycles of the other nodes is chosen.
+     * @return The shortest cycle through the chosen node, sorted by the number of shortest cycles through its nodes, or
+     * null if the graph is acyclic.
+     */
+    public static Cycle findShortestCycle(Graph graph) {
+        int[] nodes = graph.getNodeIds();
+        int[] lengths = getCycleLengths(graph, nodes, Integer.MAX_VALUE, true);
+        int girth = Integer.MAX_VALUE;
+        for(int length: lengths) girth = Math.min(girth, length);
+        if(girth == Integer.MAX_VALUE) return null;
+
+        int[] roots = new int[nodes.length];
+        int rootCount = 0;
+        for(int i = 0; i < nodes.length; i++) {
+            if(lengths[i] == girth) roots[rootCount++] = nodes[i];
+        }
+        int[] counts = countCycleNodes(graph, Arrays.copyOf(roots, rootCount), girth);
+
+        int best = roots[0];
+        for(int i = 1; i < rootCount; i++) {
+            if(counts[roots[i]] > counts[best]) best = roots[i];
+        }
+        Cycle cycle = SimpleBFS.findBestCycle(graph, best, girth);
+        cycle.sortDescending(counts);
+        return cycle;
+    }
+
+    /**
+     * @param roots Dense indices of the roots.
+     * @param maxLength Cycles longer than this are not searched, lowered to the shortest cycle found so far if
+     *                  onlyShortest is set.
+     * @param onlyShortest Searches only for cycles as short as the shortest one found so far (the girth).
+     * @return Length of the shortest cycle through every root, or Integer.MAX_VALUE if no cycle within the max length.
+     */
+    public static int[] getCycleLengths(Graph graph, int[] roots, int maxLength, boolean onlyShortest) {
+        Arcs arcs = new Arcs(graph, false);
+        int n = arcs.nodes.length;
+        int[] lengths = new int[roots.length];
+        long[] seen = new long[n];
+        long[] frontier = new long[n];
+        long[] next = new long[n];
+        long[] rootBits = new long[n]; // Bit of the node, if it is a root of the batch
+        int[] active = new int[n]; // Nodes with a non empty frontier
+        int[] nextActive = new int[n];
+
+        for(int from = 0; from < roots.length; from += 64) {
+            int to = Math.min(from + 64, roots.length);
+            long remaining = 0;
+            int activeCount = 0;
+            for(int i = from; i < to; i++) {
+                int root = arcs.positions[roots[i]];
+                long bit = 1L << (i - from);
+                lengths[i] = Integer.MAX_VALUE;
+                if(rootBits[root] == 0) active[activeCount++] = root;
+                rootBits[root] |= bit;
+                seen[root] |= bit;
+                frontier[root] |= bit;
+                remaining |= bit;
+            }
+
+            for(int level = 1; level <= maxLength && remaining != 0 && activeCount > 0; level++) {
+                int nextCount = 0;
+                for(int a = 0; a < activeCount; a++) {
+                    int x = active[a];
+                    long bits = frontier[x] & remaining;
+                    frontier[x] = 0;
+                    if(bits == 0) continue;
+                    for(int j = arcs.offsets[x]; j < arcs.offsets[x + 1]; j++) {
+                        int y = arcs.targets[j];
+                        long closed = bits & rootBits[y] & remaining;
+                        if(closed != 0) {
+                            // The roots in closed reach themselves: their shortest cycles have this length
+                            remaining &= ~closed;
+                            for(long c = closed; c != 0; c &= c - 1) {
+                                lengths[from + Long.numberOfTrailingZeros(c)] = level;
+                            }
+                            if(onlyShortest) maxLength = level;
+                        }
+                        long reached = bits & ~seen[y];
+                        if(reached != 0) {
+                            if(next[y] == 0) nextActive[nextCount++] = y;
+                            next[y] |= reached;
+                            seen[y] |= reached;
+                        }
+                    }
+                }
+                // The next frontier becomes the current one
+                long[] words = frontier;
+                frontier = next;
+                next = words;
+                int[] list = active;
+                active = nextActive;
+                nextActive = list;
+                activeCount = nextCount;
+            }
+
+            // Clear the batch
+            for(int a = 0; a < activeCount; a++) frontier[active[a]] = 0;
+            Arrays.fill(seen, 0);
+            for(int i = from; i < to; i++) rootBits[arcs.positions[roots[i]]] = 0;
+        }
+        return lengths;
+    }
+
+    /**
+     * A node w lies on a shortest cycle through the root r, iff the distances r -> w and w -> r add up to the length
+     * of the cycle, or less (they can't add up to less, the two paths contain a cycle through r). Both are found with
+     * the bit parallel BFS, forward over the out arcs and backward over the in arcs.
+     * The forward distances are kept bit sliced: slice d holds bit d of the distance of every root of the batch, so a
+     * node needs only log2(length) words. The backward BFS keeps only its frontier and counts a node for the roots
+     * which reach it within the remaining distance. Like in getCycleLengths(), a level only touches its frontier.
+     * @param roots Dense indices of roots whose shortest cycles have the given length.
+     * @return Number of roots with a shortest cycle through the node, for every dense index.
+     */
+    private static int[] countCycleNodes(Graph graph, int[] roots, int length) {
+        Arcs outArcs = new Arcs(graph, false);
+        Arcs inArcs = new Arcs(graph, true);
+        int n = outArcs.nodes.length;
+        int[] counts = new int[graph.getCapacity()];
+        long[][] slices = new long[32 - Integer.numberOfLeadingZeros(Math.max(length - 1, 1))][n];
+        long[] reached = new long[n]; // Roots with a forward distance below the length
+        long[] seen = new long[n];
+        Frontier frontier = new Frontier(n);
+        for(int from = 0; from < roots.length; from += 64) {
+            int to = Math.min(from + 64, roots.length);
+            for(long[] slice: slices) Arrays.fill(slice, 0);
+
+            // Forward: the distances r -> w below the length
+            frontier.start(outArcs, roots, from, to, reached);
+            for(int level = 1; level < length && frontier.size > 0; level++) {
+                frontier.expand(outArcs, reached);
+                for(int a = 0; a < frontier.size; a++) {
+                    int w = frontier.nodes[a];
+                    for(int d = 0; d < slices.length; d++) {
+                        if((level >>> d & 1) != 0) slices[d][w] |= frontier.words[w];
+                    }
+                }
+            }
+
+            // Backward: a root r which reaches w at the distance w -> r = level counts w, if r -> w <= length - level
+            frontier.start(inArcs, roots, from, to, seen);
+            for(int level = 1; level < length && frontier.size > 0; level++) {
+                frontier.expand(inArcs, seen);
+                for(int a = 0; a < frontier.size; a++) {
+                    int w = frontier.nodes[a];
+                    long onCycle = frontier.words[w] & reached[w] & atMost(slices, w, length - level);
+                    counts[outArcs.nodes[w]] += Long.bitCount(onCycle);
+                }
+            }
+        }
+        // Every root is on its own shortest cycle
+        for(int root: roots) counts[root]++;
+        return counts;
+    }
+
+    /**
+     * @return The roots whose bit sliced distance to the node is at most the bound.
+     */
+    private static long atMost(long[][] slices, int w, int bound) {
+        if(bound >= 1 << slices.length) return ~0L;
+        long less = 0;
+        long equal = ~0L;
+        for(int d = slices.length - 1; d >= 0; d--) {
+            long bits = slices[d][w];
+            if((bound >>> d & 1) != 0) {
+                less |= equal & ~bits;
+                equal &= bits;
+            } else {
+                equal &= ~bits;
+            }
+        }
+        return less | equal;
+    }
+
+    /**
+     * Frontier of the bit parallel BFS: the roots which reached a node at the current level, with the list of these
+     * nodes. The words are cleared while a level is expanded, so only the next frontier is set afterwards.
+     */
+    private static class Frontier {
+
+        private long[] words;
+        private long[] nextWords;
+        private int[] nodes;
+        private int[] nextNodes;
+        private int size = 0;
+
+        private Frontier(int n) {
+            words = new long[n];
+            nextWords = new long[n];
+            nodes = new int[n];
+            nextNodes = new int[n];
+        }
+
+        /**
+         * Clears the words of the last batch, then the roots of the batch are seen and form the frontier.
+         */
+        private void start(Arcs arcs, int[] roots, int from, int to, long[] seen) {
+            Arrays.fill(seen, 0);
+            for(int a = 0; a < size; a++) words[nodes[a]] = 0;
+            size = 0;
+            for(int i = from; i < to; i++) {
+                int root = arcs.positions[roots[i]];
+                if(words[root] == 0) nodes[size++] = root;
+                seen[root] |= 1L << (i - from);
+                words[root] |= 1L << (i - from);
+            }
+        }
+
+        /**
+         * One level: the frontier becomes the nodes which the roots reach first from it.
+         */
+        private void expand(Arcs arcs, long[] seen) {
+            int nextSize = 0;
+            for(int a = 0; a < size; a++) {
+                int x = nodes[a];
+                long bits = words[x];
+                words[x] = 0;
+                for(int j = arcs.offsets[x]; j < arcs.offsets[x + 1]; j++) {
+                    int y = arcs.targets[j];
+                    long reached = bits & ~seen[y];
+                    if(reached != 0) {
+                        if(nextWords[y] == 0) nextNodes[nextSize++] = y;
+                        nextWords[y] |= reached;
+                        seen[y] |= reached;
+                    }
+                }
+            }
+            long[] swapWords = words;
+            words = nextWords;
+            nextWords = swapWords;
+            int[] swapNodes = nodes;
+            nodes = nextNodes;
+            nextNodes = swapNodes;
+            size = nextSize;
+        }
+    }
+
+    /**
+     * The out (or in) arcs of the alive nodes as int arrays over their positions, so the levels run without the
+     * lookups of the graph.
+     */
+    private static class Arcs {
+
+        private final int[] positions; // Dense index -> position
+        private final int[] nodes; // Position -> dense index
+        private final int[] offsets;
+        private final int[] targets;
+
+        private Arcs(Graph graph, boolean reversed) {
+            int n = graph.getNodeCount();
+            positions = new int[graph.getCapacity()];
+            nodes = new int[n];
+            int p = 0;
+            for(int v = graph.nextNode(0); v != -1; v = graph.nextNode(v + 1)) {
+                positions[v] = p;
+                nodes[p++] = v;
+            }
+            offsets = new int[n + 1];
+            int[] arcs = new int[graph.getEdgeCount()];
+            int[] buffer = new int[graph.getCapacity()];
+            for(int i = 0; i < n; i++) {
+                int count = reversed ? graph.getInIds(nodes[i], buffer) : graph.getOutIds(nodes[i], buffer);
+                if(offsets[i] + count > arcs.length) arcs = Arrays.copyOf(arcs, offsets[i] + count);
+                for(int j = 0; j < count; j++) arcs[offsets[i] + j] = positions[buffer[j]];
+                offsets[i + 1] = offsets[i] + count;
+            }
+            targets = arcs;
+        }
+    }
+}
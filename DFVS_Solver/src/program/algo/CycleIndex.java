@@ -0,0 +1,241 @@
+package program.algo;
+
+import program.model.Cycle;
+import program.model.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental version of FullBFS: keeps the shortest cycle through every node, so the branching only searches again
+ * where the graph changed. Every node has a length, which is exact if the node has a cycle of this length, else it is a
+ * lower bound for its cycles. A removed node only clears the cycles which contain it (their lengths stay valid lower
+ * bounds), an added arc lowers the length of its tail to 2. Every cycle of the graph then has a node whose length is at
+ * most the length of the cycle, so searching the nodes whose length is at most the shortest known cycle finds the
+ * shortest cycle of the graph.
+ * All changes are recorded on a trail, so the branching can undo them together with the graph.
+ */
+public class CycleIndex {
+
+    private static final int SWEEP_SIZE = 64; // Nodes to search from which the bit parallel BFS is used
+
+    private final int[][] cycles; // Shortest cycle through the node, or null
+    private final int[] lengths;
+    private final int[] cycleCounts; // Number of stored cycles containing the node
+
+    // Node -> nodes whose cycles contained it at some time (may be outdated, the cycles are checked)
+    private final int[][] users;
+    private final int[] userCount;
+
+    // Undo trail: a changed node is stored as its index, as n + index if its new cycle added users, with its old cycle &
+    // length on the stacks
+    private int[] trail = new int[64];
+    private int trailSize = 0;
+    private final List<int[]> oldCycles = new ArrayList<>();
+    private int[] oldLengths = new int[64];
+
+    // BFS workspace, the visited nodes are marked with the stamp of the search instead of clearing the arrays
+    private final int[] stamps;
+    private int stamp = 0;
+    private final int[] depths;
+    private final int[] parents;
+    private final int[] queue;
+    private final int[] buffer;
+
+    public CycleIndex(Graph graph) {
+        int n = graph.getCapacity();
+        cycles = new int[n][];
+        lengths = new int[n];
+        cycleCounts = new int[n];
+        users = new int[n][];
+        userCount = new int[n];
+        stamps = new int[n];
+        depths = new int[n];
+        parents = new int[n];
+        queue = new int[n];
+        buffer = new int[n];
+        // Nothing known yet, every node is searched by the first query
+        Arrays.fill(lengths, 1);
+    }
+
+    /**
+     * @return The current position on the trail, to be passed to backtrack().
+     */
+    public int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Updates the index for the changes of the graph since the mark: clears the cycles through removed nodes and
+     * lowers the lengths of the tails of added arcs.
+     * @param graph The reversible graph of the search.
+     * @param mark The position on the trail of the graph.
+     */
+    public void update(Graph graph, int mark) {
+        for(int r: graph.getRemovedNodes(mark)) {
+            if(cycles[r] != null) set(r, null, lengths[r]);
+            for(int i = 0; i < userCount[r]; i++) {
+                int v = users[r][i];
+                if(cycles[v] != null && contains(cycles[v], r)) set(v, null, lengths[v]);
+            }
+        }
+        for(int tail: graph.getAddedArcTails(mark)) {
+            if(graph.hasNode(tail) && lengths[tail] > 2) set(tail, cycles[tail], 2);
+        }
+    }
+
+    /**
+     * Like FullBFS: the shortest cycle whose nodes appear most in the stored cycles of the other nodes, sorted by that.
+     */
+    public Cycle findShortestCycle(Graph graph) {
+        int minSize = Integer.MAX_VALUE;
+        for(int v = graph.nextNode(0); v != -1; v = graph.nextNode(v + 1)) {
+            if(isExact(v)) minSize = Math.min(minSize, lengths[v]);
+        }
+        minSize = Math.min(minSize, sweep(graph, minSize));
+        for(int v = graph.nextNode(0); v != -1; v = graph.nextNode(v + 1)) {
+            if(!isExact(v) && lengths[v] <= minSize) {
+                search(graph, v, minSize);
+                if(isExact(v)) minSize = Math.min(minSize, lengths[v]);
+            }
+        }
+
+        // Find the cycle, whose nodes appear most in other cycles
+        int best = -1;
+        int maxCycleCount = 0;
+        for(int v = graph.nextNode(0); v != -1; v = graph.nextNode(v + 1)) {
+            if(!isExact(v) || lengths[v] != minSize) continue;
+            int count = 0;
+            for(int node: cycles[v]) count += cycleCounts[node];
+            if(count > maxCycleCount) {
+                best = v;
+                maxCycleCount = count;
+            }
+        }
+        if(best == -1) throw new RuntimeException("Cycle index didn't find a cycle!");
+
+        // Sort nodes in cycle by their frequency in other cycles
+        Cycle cycle = new Cycle(cycles[best]);
+        cycle.sortDescending(cycleCounts);
+        return cycle;
+    }
+
+    private boolean isExact(int v) {
+        return cycles[v] != null && cycles[v].length == lengths[v];
+    }
+
+    /**
+     * If many nodes must be searched (e.g. by the first query), their lengths are computed by the bit parallel BFS
+     * first. It stops at the girth, so afterwards only the nodes of the shortest cycles are searched for their cycles.
+     * @return The girth, or maxSize if the nodes were not swept or have no cycle within it.
+     */
+    private int sweep(Graph graph, int maxSize) {
+        int[] roots = new int[graph.getNodeCount()];
+        int count = 0;
+        for(int v = graph.nextNode(0); v != -1; v = graph.nextNode(v + 1)) {
+            if(!isExact(v) && lengths[v] <= maxSize) roots[count++] = v;
+        }
+        if(count < SWEEP_SIZE) return maxSize;
+        roots = Arrays.copyOf(roots, count);
+        int[] rootLengths = BitBFS.getCycleLengths(graph, roots, maxSize, true);
+        int girth = maxSize;
+        for(int length: rootLengths) girth = Math.min(girth, length);
+        int bound = (girth == Integer.MAX_VALUE) ? girth : girth + 1;
+        for(int i = 0; i < count; i++) {
+            int length = Math.min(rootLengths[i], bound);
+            if(length > lengths[roots[i]]) set(roots[i], cycles[roots[i]], length);
+        }
+        return girth;
+    }
+
+    /**
+     * BFS from the node for its shortest cycle with at most maxSize nodes, else its length becomes maxSize + 1.
+     */
+    private void search(Graph graph, int root, int maxSize) {
+        stamp++;
+        stamps[root] = stamp;
+        depths[root] = 0;
+        int head = 0, tail = 0;
+        queue[tail++] = root;
+        while(head < tail) {
+            int v = queue[head++];
+            if(depths[v] >= maxSize) break;
+            int count = graph.getOutIds(v, buffer);
+            for(int i = 0; i < count; i++) {
+                int out = buffer[i];
+                if(out == root) {
+                    // Same order as SimpleBFS: the path from v back to the root
+                    int[] cycle = new int[depths[v] + 1];
+                    int j = 0;
+                    for(int w = v; w != root; w = parents[w]) cycle[j++] = w;
+                    cycle[j] = root;
+                    set(root, cycle, cycle.length);
+                    return;
+                }
+                if(stamps[out] != stamp) {
+                    stamps[out] = stamp;
+                    depths[out] = depths[v] + 1;
+                    parents[out] = v;
+                    queue[tail++] = out;
+                }
+            }
+        }
+        set(root, null, (maxSize == Integer.MAX_VALUE) ? maxSize : maxSize + 1);
+    }
+
+    private void set(int v, int[] cycle, int length) {
+        int n = cycles.length;
+        if(trailSize >= oldLengths.length) oldLengths = Arrays.copyOf(oldLengths, trailSize * 2);
+        oldLengths[trailSize] = lengths[v];
+        oldCycles.add(cycles[v]);
+        boolean newCycle = cycle != null && cycle != cycles[v];
+        record(newCycle ? n + v : v);
+        count(cycles[v], -1);
+        count(cycle, 1);
+        cycles[v] = cycle;
+        lengths[v] = length;
+        if(newCycle) {
+            for(int w: cycle) {
+                if(users[w] == null) users[w] = new int[4];
+                else if(userCount[w] == users[w].length) users[w] = Arrays.copyOf(users[w], userCount[w] * 2);
+                users[w][userCount[w]++] = v;
+            }
+        }
+    }
+
+    private void count(int[] cycle, int delta) {
+        if(cycle == null) return;
+        for(int w: cycle) cycleCounts[w] += delta;
+    }
+
+    /**
+     * Undoes all changes recorded after the mark, in reversed order.
+     * @param mark The position returned by mark().
+     */
+    public void backtrack(int mark) {
+        int n = cycles.length;
+        while(trailSize > mark) {
+            int entry = trail[--trailSize];
+            int v = (entry >= n) ? entry - n : entry;
+            // The users added with the cycle are the last ones of their lists
+            if(entry >= n) for(int w: cycles[v]) userCount[w]--;
+            count(cycles[v], -1);
+            cycles[v] = oldCycles.remove(oldCycles.size() - 1);
+            lengths[v] = oldLengths[trailSize];
+            count(cycles[v], 1);
+        }
+    }
+
+    private void record(int entry) {
+        if(trailSize == trail.length) trail = Arrays.copyOf(trail, trailSize * 2);
+        trail[trailSize++] = entry;
+    }
+
+    private static boolean contains(int[] cycle, int node) {
+        for(int w: cycle) {
+            if(w == node) return true;
+        }
+        return false;
+    }
+}
@@ -2,7 +2,6 @@ package program.algo;
 
 import program.model.Cycle;
 import program.model.Graph;
-import program.model.Node;
 
 import java.util.List;
 
@@ -27,8 +26,8 @@ public abstract class CyclePackingOld {
         int lowerBound = 0;
         Cycle cycle;
         while ((cycle = LightBFS.findShortestCycle(packingCopy)) != null) {
-            for (Node node : cycle.getNodes()) {
-                packingCopy.removeNode(node.id);
+            for (int node : cycle.getNodes()) {
+                packingCopy.removeNode(node);
             }
             lowerBound++;
             if(lowerBound > k){
@@ -42,7 +41,7 @@ public abstract class CyclePackingOld {
     public static boolean findCyclePairs(Graph graph, int k){
         Graph copy = graph.copy();
         int lowerBound = 0;
-        Integer[] delete;
+        int[] delete;
         while((delete=find2Cycle(copy)).length!=0) {
             lowerBound++;
             if(lowerBound>k){
@@ -54,41 +53,39 @@ public abstract class CyclePackingOld {
         return false;
     }
 
-    private static Integer[] find2Cycle(Graph graph) {
-        for (Node node : graph.getNodes()) {
-            if (node.getInIds().size() < node.getOutIds().size()) {
-                for (int i = 0; i < node.getInIds().size(); i++) {
-                    if (node.getOutIds().contains(node.getInIds().get(i))) {
-                        return new Integer[]{node.id, node.getInIds().get(i)};
+    private static int[] find2Cycle(Graph graph) {
+        for (int node : graph.getNodeIds()) {
+            if (graph.getInDegree(node) < graph.getOutDegree(node)) {
+                for (int inId : graph.getInIds(node)) {
+                    if (graph.hasArc(node, inId)) {
+                        return new int[]{node, inId};
                     }
                 }
             } else {
-                for (int i = 0; i < node.getOutIds().size(); i++) {
-                    if (node.getInIds().contains(node.getOutIds().get(i))) {
-                        return new Integer[]{node.id, node.getOutIds().get(i)};
+                for (int outId : graph.getOutIds(node)) {
+                    if (graph.hasArc(outId, node)) {
+                        return new int[]{node, outId};
                     }
                 }
             }
         }
-        return new Integer[]{};
+        return new int[]{};
     }
 
-    private static Cycle getTriangle(Graph graph, int minCycleCountPerNode) {
+    private static Cycle getTriangle(Graph graph, int[] cycleCounts, int minCycleCountPerNode) {
         int count = 0;
 
         Cycle bestTriangle = null;
         int minCycleCountPerTri = Integer.MAX_VALUE;
 
-        for(Node node: graph.getNodes()) {
-            for(Integer aId: node.getOutIds()) {
-                if (node.getInIds().contains(aId)) { // node <-> a
-                    for(Integer bId: node.getOutIds()) {
-                        if(node.getInIds().contains(bId)) { // b <-> node <-> a
-                            Node a = graph.getNode(aId);
-                            Node b = graph.getNode(bId);
-                            if(b.getOutIds().contains(aId) && b.getInIds().contains(aId)) { // fully connected triangle
-                                int cycleCount = node.cycleCount + a.cycleCount + b.cycleCount;
-                                if((node.cycleCount == minCycleCountPerNode || a.cycleCount == minCycleCountPerNode || b.cycleCount == minCycleCountPerNode) && cycleCount < minCycleCountPerTri) {
+        for(int node: graph.getNodeIds()) {
+            for(int a: graph.getOutIds(node)) {
+                if (graph.hasArc(a, node)) { // node <-> a
+                    for(int b: graph.getOutIds(node)) {
+                        if(graph.hasArc(b, node)) { // b <-> node <-> a
+                            if(graph.hasArc(b, a) && graph.hasArc(a, b)) { // fully connected triangle
+                                int cycleCount = cycleCounts[node] + cycleCounts[a] + cycleCounts[b];
+                                if((cycleCounts[node] == minCycleCountPerNode || cycleCounts[a] == minCycleCountPerNode || cycleCounts[b] == minCycleCountPerNode) && cycleCount < minCycleCountPerTri) {
                                     minCycleCountPerTri = cycleCount;
                                     bestTriangle = new Cycle(node, a, b);
                                 }
@@ -108,24 +105,24 @@ public abstract class CyclePackingOld {
         List<Cycle> pairCycles = graph.getPairCycles();
         if(!pairCycles.isEmpty()) {
             // Set cycle count for every node
-            int minCycleCountPerNode = Integer.MAX_VALUE;
-            for(Node node: graph.getNodes()) {
-                node.cycleCount = 0;
-                for(Cycle pairCycle: pairCycles) {
-                    if(pairCycle.contains(node)) {
-                        node.cycleCount++;
-                    }
+            int[] cycleCounts = new int[graph.getCapacity()];
+            for(Cycle pairCycle: pairCycles) {
+                for(int node: pairCycle.getNodes()) {
+                    cycleCounts[node]++;
                 }
-                if(node.cycleCount > 0)
-                    minCycleCountPerNode = Math.min(minCycleCountPerNode, node.cycleCount);
+            }
+            int minCycleCountPerNode = Integer.MAX_VALUE;
+            for(int node: graph.getNodeIds()) {
+                if(cycleCounts[node] > 0)
+                    minCycleCountPerNode = Math.min(minCycleCountPerNode, cycleCounts[node]);
             }
 
             // Look for fully connected triangles
-            Cycle triangle = getTriangle(graph, minCycleCountPerNode);
+            Cycle triangle = getTriangle(graph, cycleCounts, minCycleCountPerNode);
             if(triangle != null) {
-                graph.removeNode(triangle.get(0).id);
-                graph.removeNode(triangle.get(1).id);
-                graph.removeNode(triangle.get(2).id);
+                graph.removeNode(triangle.get(0));
+                graph.removeNode(triangle.get(1));
+                graph.removeNode(triangle.get(2));
                 return 2;
             }
 
@@ -134,12 +131,12 @@ public abstract class CyclePackingOld {
             Cycle bestCycle = null;
             for(Cycle pairCycle : pairCycles) {
                 int cycleCount = 0;
-                Node a = pairCycle.get(0);
-                Node b = pairCycle.get(0);
-                for(Node node: pairCycle.getNodes()) {
-                    cycleCount += node.cycleCount;
+                int a = pairCycle.get(0);
+                int b = pairCycle.get(0);
+                for(int node: pairCycle.getNodes()) {
+                    cycleCount += cycleCounts[node];
                 }
-                if((a.cycleCount == minCycleCountPerNode || b.cycleCount == minCycleCountPerNode) ) { // If new max found, replace the current best cycle
+                if((cycleCounts[a] == minCycleCountPerNode || cycleCounts[b] == minCycleCountPerNode) ) { // If new max found, replace the current best cycle
                     bestCycle = pairCycle;
                     minCycleCount = cycleCount;
                 }
@@ -150,8 +147,8 @@ public abstract class CyclePackingOld {
                 throw new RuntimeException("Cycle packing didn't found a cycle!");
             }
 
-            for (Node node : bestCycle.getNodes()) {
-                graph.removeNode(node.id);
+            for (int node : bestCycle.getNodes()) {
+                graph.removeNode(node);
             }
             return 1;
         }
@@ -159,8 +156,8 @@ public abstract class CyclePackingOld {
         // Look for cycle to remove (if no pair cycles found)
         Cycle cycle = LightBFS.findShortestCycle(graph);
         if(cycle != null) {
-            for (Node node : cycle.getNodes()) {
-                graph.removeNode(node.id);
+            for (int node : cycle.getNodes()) {
+                graph.removeNode(node);
             }
             return 1;
         } else {
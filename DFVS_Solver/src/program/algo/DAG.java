@@ -1,64 +1,34 @@
 package program.algo;
 
 import program.model.Graph;
-import program.model.Node;
-
-import java.util.ArrayList;
-import java.util.List;
 
 
 public abstract class DAG {
 
-    public static boolean isDAG(Graph graph){
-
-        //Start Recursion
-        return isDAGRecursive(new ArrayList<>(), graph);
-    }
-
-    public static boolean isDAGFast(Graph graph) {
-        Graph dagGraph = graph.copy();
-
-        while(true) {
-            List<Integer> checkedIds = new ArrayList<>();
-            for(Node node: dagGraph.getNodes()) {
-                if(node.getInIdCount() == 0 || node.getOutIdCount() == 0) {
-                    checkedIds.add(node.id);
-                }
-            }
-            for(Integer id: checkedIds) {
-                dagGraph.removeNode(id);
-            }
-            if(checkedIds.isEmpty()) {
-                return dagGraph.getNodeCount() == 0;
-            }
+    /**
+     * Checks if the graph is acyclic by repeatedly removing nodes without in arcs (Kahn's algorithm).
+     * Works on a copy of the in degrees, the graph itself is not changed.
+     * @param graph The graph.
+     * @return True if the graph has no cycles.
+     */
+    public static boolean isDAG(Graph graph) {
+        int[] inDegree = new int[graph.getCapacity()];
+        int[] queue = new int[graph.getNodeCount()];
+        int[] buffer = new int[graph.getCapacity()];
+        int head = 0;
+        int tail = 0;
+
+        for(int v = graph.nextNode(0); v >= 0; v = graph.nextNode(v + 1)) {
+            inDegree[v] = graph.getInDegree(v);
+            if(inDegree[v] == 0) queue[tail++] = v;
         }
-    }
-
-    private static boolean isDAGRecursive(List<Node> checked, Graph graph){
-
-        if(checked.size() == graph.getNodeCount()) return true;
-
-        //Check if something can be removed
-        for(Node node : graph.getNodes()){
-
-            //Skip those already checked
-            if(checked.contains(node)) continue;
-
-            //Get all out going arcs
-            List<Node> outNodes = graph.getOutNodes(node);
-
-            //Remove those with no arcs
-            if(outNodes.size() == 0){
-                checked.add(node);
-                return isDAGRecursive(checked, graph);
-            }
-
-            //Remove those where all neighbours are already checked
-            if(checked.containsAll(outNodes)){
-                checked.add(node);
-                return isDAGRecursive(checked, graph);
+        while(head < tail) {
+            int v = queue[head++];
+            int count = graph.getOutIds(v, buffer);
+            for(int i = 0; i < count; i++) {
+                if(--inDegree[buffer[i]] == 0) queue[tail++] = buffer[i];
             }
         }
-        return false;
+        return tail == graph.getNodeCount();
     }
 }
@@ -2,234 +2,295 @@ package program.algo;
 
 import program.model.Graph;
 import program.model.MaxFlowGraph;
-import program.model.MaxFlowNode;
-import program.model.Node;
 
-import java.util.*;
-
-public abstract class Flowers {
-
-    private static MaxFlowGraph maxFlowGraph;
-    private static int[][] maxFlowGraphMatrix;
-    private static int N;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Flower rule: the petal of a node is the max number of cycles through it which share only this node. A node with a
+ * petal > k is in every solution with at most k nodes.
+ * The petals are max flows in the split network, where every node w becomes an arc w- -> w+ and every arc x -> w an
+ * arc x+ -> w-. The petal of u is the flow from u+ to u- without the arc u- -> u+. The network is built once, for every
+ * node only its own arc is switched off & on.
+ * The petals are kept up to date incrementally: a removed node is switched off in the network and only the nodes whose
+ * flow paths went through it are marked dirty. They are recomputed when the rule needs them. All changes are recorded
+ * on a trail, so the branching can undo them together with the graph.
+ */
+public class Flowers {
+
+    private static final int CHUNK_SIZE = 64; // Nodes per parallel task
+
+    private final MaxFlowGraph network;
+    private final int[] splitArcs; // Position of w- -> w+ in the network
+
+    // Petal, limit of its flow, inner nodes of the flow paths & dirty flag of every node. A petal below its limit is
+    // the max flow in the network at that time, the removals can only lower it
+    private final int[] petals;
+    private final int[] limits;
+    private final int[][] paths;
+    private final boolean[] dirty;
+
+    // Node -> nodes whose paths went through it at some time (may be outdated, the paths are checked)
+    private final int[][] users;
+    private final int[] userCount;
+
+    // Undo trail: a switched off node is stored as its index, a dirty node as n + index, a recomputed node as
+    // 2n + index with its old petal, limit & path on the stacks
+    private int[] trail = new int[64];
+    private int trailSize = 0;
+    private final List<int[]> oldPaths = new ArrayList<>();
+    private int[] oldPetals = new int[64];
+    private int[] oldLimits = new int[64];
 
     /**
-     * Set Petal Value for each node of the graph
-     * @param graph The Graph.
+     * Computes the petals which matter for the flower rule with a k in [lowerBound, upperBound]: the flows stop at
+     * upperBound + 1, nodes with at most lowerBound in or out arcs start dirty.
+     * @param pool Spreads the nodes over the threads of the pool, each with its own copy of the network. May be null.
      */
-    public static void SetAllPetals(Graph graph){
-
-        Node previousNode = null;
-        for(Node node : graph.getNodes()){
-            node.petal = GetPetal(graph, node, previousNode);
-            node.maxPetal =  node.petal;
-            previousNode = node;
+    public Flowers(Graph graph, int lowerBound, int upperBound, ForkJoinPool pool) {
+        int n = graph.getCapacity();
+        network = createNetwork(graph);
+        splitArcs = new int[n];
+        petals = new int[n];
+        limits = new int[n];
+        paths = new int[n][];
+        dirty = new boolean[n];
+        users = new int[n][];
+        userCount = new int[n];
+        Arrays.fill(splitArcs, -1);
+
+        List<Integer> nodes = new ArrayList<>();
+        for(int u = graph.nextNode(0); u != -1; u = graph.nextNode(u + 1)) {
+            splitArcs[u] = network.getArc(2 * u, 2 * u + 1);
+            paths[u] = new int[0];
+            // The skipped nodes are computed when a smaller k needs them
+            if(graph.getCardinality(u) > lowerBound) nodes.add(u);
+            else dirty[u] = true;
         }
 
-    }
+        // Independent flows, so the nodes can be split between threads
+        int limit = (upperBound == Integer.MAX_VALUE) ? upperBound : upperBound + 1;
+        boolean parallel = pool != null && nodes.size() > CHUNK_SIZE;
+        Map<Thread, MaxFlowGraph> workspaces = parallel ? new ConcurrentHashMap<>() : null;
+        PetalTask task = new PetalTask(graph, nodes, 0, nodes.size(), limit, workspaces);
+        if(!parallel) task.compute();
+        else if(ForkJoinTask.inForkJoinPool()) task.invoke();
+        else pool.invoke(task);
 
-    private static int GetPetal(Graph graph, Node u, Node previousU){
-
-        //Only create graph from scratch if there is no graph
-        if(previousU == null){
-
-            //Copies
-            maxFlowGraph = new MaxFlowGraph();
+        for(int u: nodes) addUser(u);
+    }
 
-            //Step 1: Replace u
-            for(Node node : graph.getNodes()){
-                //Ingoing to node-
-                if(node.getOutIds().contains(u.id)){
-                    maxFlowGraph.addArc(node.id + "+", u.id + "-");
-                }
+    /**
+     * @return The split network with w- = 2w & w+ = 2w + 1 for every dense index w.
+     */
+    private static MaxFlowGraph createNetwork(Graph graph) {
+        int arcCount = graph.getNodeCount() + graph.getEdgeCount();
+        int[] sources = new int[arcCount];
+        int[] targets = new int[arcCount];
+        int[] buffer = new int[graph.getCapacity()];
+        int i = 0;
+        for(int w = graph.nextNode(0); w != -1; w = graph.nextNode(w + 1)) {
+            sources[i] = 2 * w;
+            targets[i++] = 2 * w + 1;
+            int inCount = graph.getInIds(w, buffer);
+            for(int j = 0; j < inCount; j++) {
+                sources[i] = 2 * buffer[j] + 1;
+                targets[i++] = 2 * w;
             }
+        }
+        return new MaxFlowGraph(2 * graph.getCapacity(), sources, targets, i);
+    }
 
-            //Step 2: Replace each w (that is not u)
-            for(Node w : graph.getNodes()){
-                if(w == u) continue;
-
-                //Add connection
-                maxFlowGraph.addArc(w.id + "-", w.id + "+");
+    /**
+     * Computes the petals of a range of nodes, splits it in halves down to CHUNK_SIZE nodes.
+     */
+    private class PetalTask extends RecursiveAction {
+
+        private final Graph graph;
+        private final List<Integer> nodes;
+        private final int from;
+        private final int to;
+        private final int limit;
+        private final Map<Thread, MaxFlowGraph> workspaces; // Copy of the network per thread, null if sequential
+
+        private PetalTask(Graph graph, List<Integer> nodes, int from, int to, int limit, Map<Thread, MaxFlowGraph> workspaces) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+            this.workspaces = workspaces;
+        }
 
-                for(Node node : graph.getNodes()){
-                    //Ingoing to node-
-                    if(node.getOutIds().contains(w.id)){
-                        maxFlowGraph.addArc(node.id + "+", w.id + "-");
-                    }
-                }
+        @Override
+        protected void compute() {
+            if(workspaces != null && to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PetalTask(graph, nodes, from, middle, limit, workspaces), new PetalTask(graph, nodes, middle, to, limit, workspaces));
+                return;
+            }
+            // In parallel every thread works on its own copy, the network itself stays unchanged meanwhile. A flow
+            // restores the capacities it changed, so the chunks of a thread reuse the copy
+            MaxFlowGraph workspace = (workspaces != null) ? workspaces.computeIfAbsent(Thread.currentThread(), thread -> network.copy()) : network;
+            for(int i = from; i < to; i++) {
+                int u = nodes.get(i);
+                computePetal(workspace, u, Math.min(limit, graph.getCardinality(u)));
             }
-
-            //Values for algorithm
-            N = maxFlowGraph.getNodeCount();
-            maxFlowGraphMatrix = convertToMatrix(maxFlowGraph, N);
         }
-        else{
-
-            //Change prev u
-            MaxFlowNode prev_u_plus = maxFlowGraph.getNodes().stream().filter(x -> Objects.equals(x.label, previousU.id + "+")).findFirst().get();
-            MaxFlowNode prev_u_minus = maxFlowGraph.getNodes().stream().filter(x -> Objects.equals(x.label, previousU.id + "-")).findFirst().get();
-            int prev_index_u_plus = maxFlowGraph.getNodes().indexOf(prev_u_plus);
-            int prev_index_u_minus = maxFlowGraph.getNodes().indexOf(prev_u_minus);
-            maxFlowGraphMatrix[prev_index_u_minus][prev_index_u_plus] = 1;
-
-            ////Change new u
-            MaxFlowNode u_plus = maxFlowGraph.getNodes().stream().filter(x -> Objects.equals(x.label, u.id + "+")).findFirst().get();
-            MaxFlowNode u_minus = maxFlowGraph.getNodes().stream().filter(x -> Objects.equals(x.label, u.id + "-")).findFirst().get();
-            int index_u_plus = maxFlowGraph.getNodes().indexOf(u_plus);
-            int index_u_minus = maxFlowGraph.getNodes().indexOf(u_minus);
-            maxFlowGraphMatrix[index_u_minus][index_u_plus] = 0;
+    }
 
+    /**
+     * Runs the flow of u and stores its petal & the inner nodes of its paths.
+     */
+    private void computePetal(MaxFlowGraph workspace, int u, int limit) {
+        int splitArc = splitArcs[u];
+        workspace.setCapacity(splitArc, 0);
+        petals[u] = workspace.getMaxFlow(2 * u + 1, 2 * u, limit);
+        limits[u] = limit;
+        int[] changed = workspace.getChangedArcs();
+        int[] path = new int[changed.length];
+        int count = 0;
+        for(int arc: changed) {
+            int tail = workspace.getTail(arc);
+            if((tail & 1) == 0 && workspace.getHead(arc) == tail + 1 && workspace.hasFlow(arc)) path[count++] = tail >>> 1;
         }
-
-        //Find u
-        try{
-            //Indexes
-            MaxFlowNode u_plus = maxFlowGraph.getNodes().stream().filter(x -> Objects.equals(x.label, u.id + "+")).findFirst().get();
-            MaxFlowNode u_minus = maxFlowGraph.getNodes().stream().filter(x -> Objects.equals(x.label, u.id + "-")).findFirst().get();
-            int index_u_plus = maxFlowGraph.getNodes().indexOf(u_plus);
-            int index_u_minus = maxFlowGraph.getNodes().indexOf(u_minus);
-
-            //Get paths
-            return findDisjointPaths(maxFlowGraphMatrix, index_u_plus, index_u_minus);
-
-
+        // An arc can be changed more than once
+        Arrays.sort(path, 0, count);
+        int unique = 0;
+        for(int i = 0; i < count; i++) {
+            if(unique == 0 || path[i] != path[unique - 1]) path[unique++] = path[i];
         }
-        catch (NoSuchElementException noSuchElementException){
-            return 0;
+        paths[u] = Arrays.copyOf(path, unique);
+        workspace.reset();
+        workspace.setCapacity(splitArc, 1);
+    }
+
+    private void addUser(int u) {
+        for(int w: paths[u]) {
+            if(users[w] == null) users[w] = new int[4];
+            else if(userCount[w] == users[w].length) users[w] = Arrays.copyOf(users[w], userCount[w] * 2);
+            users[w][userCount[w]++] = u;
         }
+    }
 
+    /**
+     * @return The current position on the trail, to be passed to backtrack().
+     */
+    public int mark() {
+        return trailSize;
     }
 
-    private static boolean bfs(int[][] rGraph, int s, int t, int[] parent)
-    {
-        // Create a visited array and
-        // mark all vertices as not visited
-        boolean []visited = new boolean[N];
-
-
-        // Create a queue, enqueue source vertex and
-        // mark source vertex as visited
-        Queue <Integer> q = new LinkedList<>();
-        q.add(s);
-        visited[s] = true;
-        parent[s] = -1;
-
-        // Standard BFS Loop
-        while (!q.isEmpty())
-        {
-            int u = q.peek();
-            q.remove();
-
-            for (int v = 0; v < N; v++)
-            {
-                if (!visited[v] &&
-                        rGraph[u][v] > 0)
-                {
-                    q.add(v);
-                    parent[v] = u;
-                    visited[v] = true;
+    /**
+     * Switches the removed nodes off and marks the nodes whose paths went through them as dirty.
+     * @param removedNodes The nodes removed from the graph since the last update.
+     */
+    public void removeNodes(int[] removedNodes) {
+        int n = petals.length;
+        for(int r: removedNodes) {
+            if(splitArcs[r] == -1) continue;
+            network.setCapacity(splitArcs[r], 0);
+            record(r);
+            for(int i = 0; i < userCount[r]; i++) {
+                int u = users[r][i];
+                if(!dirty[u] && contains(paths[u], r)) {
+                    dirty[u] = true;
+                    record(n + u);
                 }
             }
         }
-
-        // If we reached sink in BFS
-        // starting from source, then
-        // return true, else false
-        return (visited[t]);
     }
 
-    // Returns tne maximum number of edge-disjoint
-    // paths from s to t. This function is copy of
-    // forFulkerson() discussed at http://goo.gl/wtQ4Ks
-    private static int findDisjointPaths(int[][] graph, int s, int t)
-    {
-        int u, v;
-
-        // Residual graph where rGraph[i][j] indicates
-        // residual capacity of edge from i to j (if there
-        // is an edge. If rGraph[i][j] is 0, then there is not)
-        int [][]rGraph = new int[N][N];
-        for (u = 0; u < N; u++)
-            for (v = 0; v < N; v++)
-                rGraph[u][v] = graph[u][v];
-
-        // This array is filled by BFS and to store path
-        int[] parent = new int[N];
-
-        int max_flow = 0; // There is no flow initially
-
-        // Augment the flow while there is path
-        // from source to sink
-        while (bfs(rGraph, s, t, parent))
-        {
-            // Find minimum residual capacity of the edges
-            // along the path filled by BFS. Or we can say
-            // find the maximum flow through the path found.
-            int path_flow = Integer.MAX_VALUE;
-
-            for (v = t; v != s; v = parent[v])
-            {
-                u = parent[v];
-                path_flow = Math.min(path_flow, rGraph[u][v]);
-            }
-
-            // update residual capacities of the edges and
-            // reverse edges along the path
-            for (v = t; v != s; v = parent[v])
-            {
-                u = parent[v];
-                rGraph[u][v] -= path_flow;
-                rGraph[v][u] += path_flow;
+    /**
+     * Removes the nodes with a petal > k from the graph, every removal lowers k. Only the nodes with more than k in
+     * & out arcs can have such a petal. A dirty node is only recomputed if its old petal may have been > k and it
+     * isn't > k anyway after subtracting its broken paths (every removed node breaks at most one).
+     * @param k The max size of the solution.
+     * @return The removed nodes, which are in every solution with at most k nodes.
+     */
+    public List<Integer> applyRule(Graph graph, int k) {
+        List<Integer> flowers = new ArrayList<>();
+        boolean found = true;
+        while(found && k >= 0) {
+            found = false;
+            for(int u = graph.nextNode(0); u != -1 && !found; u = graph.nextNode(u + 1)) {
+                if(splitArcs[u] == -1 || graph.getCardinality(u) <= k) continue;
+                if(dirty[u]) {
+                    if(petals[u] < limits[u] && petals[u] <= k) continue;
+                    if(petals[u] - getBrokenPaths(graph, u) <= k) recompute(u, k + 1);
+                }
+                if(petals[u] - (dirty[u] ? getBrokenPaths(graph, u) : 0) > k) {
+                    graph.removeNode(u);
+                    removeNodes(new int[] {u});
+                    flowers.add(u);
+                    k--;
+                    found = true;
+                }
             }
-
-            // Add path flow to overall flow
-            max_flow += path_flow;
         }
-
-        // Return the overall flow (max_flow is equal to
-        // maximum number of edge-disjoint paths)
-
-        return max_flow;
+        return flowers;
     }
 
-    static private int[][] convertToMatrix(MaxFlowGraph maxFlowGraph, int N){
-        int[][] graph = new int[N][N];
-
-        for(int i = 0; i < N; i++){
-            for(int j = 0; j < N; j++){
-                MaxFlowNode node_i = maxFlowGraph.getNodes().get(i);
-                MaxFlowNode node_j = maxFlowGraph.getNodes().get(j);
-                if(node_i.getOutLabels().contains(node_j.label)) graph[i][j] = 1;
-            }
+    private int getBrokenPaths(Graph graph, int u) {
+        int broken = 0;
+        for(int w: paths[u]) {
+            if(!graph.hasNode(w)) broken++;
         }
-
-        return graph;
+        return broken;
     }
 
-    public static List<Integer> UsePetalRule(Graph graph, int k) {
-        List<Integer> removedFlowers = new ArrayList<>();
-
-        Node removeNode = findRemoveNode(graph, k);
-        while(removeNode != null){
-            removedFlowers.add(removeNode.id);
-            graph.removeNode(removeNode.id);
-
-            //Get next node
-            graph.getNodes().forEach(x -> x.petal--);
-            removeNode = findRemoveNode(graph, k);
+    private void recompute(int u, int limit) {
+        if(trailSize >= oldPetals.length) {
+            oldPetals = Arrays.copyOf(oldPetals, trailSize * 2);
+            oldLimits = Arrays.copyOf(oldLimits, trailSize * 2);
         }
+        oldPetals[trailSize] = petals[u];
+        oldLimits[trailSize] = limits[u];
+        oldPaths.add(paths[u]);
+        record(2 * petals.length + u);
+        computePetal(network, u, limit);
+        dirty[u] = false;
+        addUser(u);
+    }
 
-        return removedFlowers;
+    /**
+     * Undoes all changes recorded after the mark, in reversed order.
+     * @param mark The position returned by mark().
+     */
+    public void backtrack(int mark) {
+        int n = petals.length;
+        while(trailSize > mark) {
+            int entry = trail[--trailSize];
+            if(entry >= 2 * n) {
+                int u = entry - 2 * n;
+                // The users added by the recomputation are the last ones of their lists
+                for(int w: paths[u]) userCount[w]--;
+                paths[u] = oldPaths.remove(oldPaths.size() - 1);
+                petals[u] = oldPetals[trailSize];
+                limits[u] = oldLimits[trailSize];
+                dirty[u] = true;
+            } else if(entry >= n) {
+                dirty[entry - n] = false;
+            } else {
+                network.setCapacity(splitArcs[entry], 1);
+            }
+        }
     }
 
-    private static Node findRemoveNode(Graph graph, int k){
-        Node removeNode = null;
+    private void record(int entry) {
+        if(trailSize == trail.length) trail = Arrays.copyOf(trail, trailSize * 2);
+        trail[trailSize++] = entry;
+    }
 
-        for(Node node :  graph.getNodes()){
-            if(node.petal > k){
-                if(removeNode == null || removeNode.petal > node.petal) removeNode = node;
-            }
+    private boolean contains(int[] path, int node) {
+        for(int w: path) {
+            if(w == node) return true;
         }
-        return removeNode;
+        return false;
     }
 }
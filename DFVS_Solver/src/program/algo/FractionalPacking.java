@@ -0,0 +1,247 @@
+package program.algo;
+
+import program.model.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fractional cycle packing (the LP dual of the fractional DFVS), computed approximately with the multiplicative weights
+ * method of Garg & Koenemann: every node has a weight, the cycle with the smallest weight is routed and the weights of
+ * its nodes grow by the factor 1 + epsilon, until every cycle weighs at least 1.
+ * Dividing the routed cycles by the largest number of routed cycles through a node gives a feasible fractional packing,
+ * so its value is a lower bound at any time, also when the deadline stops the search early.
+ * The final weights, divided by the smallest cycle weight, are a fractional DFVS.
+ */
+public class FractionalPacking {
+
+    private static final double EPSILON = 0.1;
+    private static final int CHUNK_SIZE = 16; // Sources per parallel task
+
+    // Graph as int arrays: out arcs of every dense index
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] nodes;
+
+    private final double[] weights;
+    private final int[] loads; // Routed cycles through every node
+    private int routed = 0;
+    private double minLength = 0;
+
+    /**
+     * @param pool Spreads the shortest cycle queries over the threads of the pool. May be null.
+     * @param deadline The System.nanoTime() at which the routing stops.
+     */
+    public FractionalPacking(Graph graph, ForkJoinPool pool, long deadline) {
+        int n = graph.getCapacity();
+        nodes = graph.getNodeIds();
+        offsets = new int[n + 1];
+        int[] buffer = new int[n];
+        List<int[]> rows = new ArrayList<>();
+        for(int v = 0; v < n; v++) {
+            int[] row = graph.hasNode(v) ? Arrays.copyOf(buffer, graph.getOutIds(v, buffer)) : new int[0];
+            rows.add(row);
+            offsets[v + 1] = offsets[v] + row.length;
+        }
+        targets = new int[offsets[n]];
+        for(int v = 0; v < n; v++) System.arraycopy(rows.get(v), 0, targets, offsets[v], rows.get(v).length);
+
+        weights = new double[n];
+        loads = new int[n];
+        double delta = (1 + EPSILON) / Math.pow((1 + EPSILON) * Math.max(nodes.length, 1), 1 / EPSILON);
+        for(int v: nodes) weights[v] = delta;
+
+        route(pool, deadline);
+    }
+
+    /**
+     * Routes the cycles in rounds: every round finds the lightest cycle of every source, then routes them from the
+     * lightest on, as long as their current weight is at most 1 + epsilon times the lightest one.
+     */
+    private void route(ForkJoinPool pool, long deadline) {
+        while(System.nanoTime() < deadline) {
+            List<double[]> cycles = findCycles(pool);
+            if(cycles.isEmpty()) break;
+            cycles.sort((a, b) -> Double.compare(a[0], b[0]));
+            double threshold = cycles.get(0)[0] * (1 + EPSILON);
+            for(double[] cycle: cycles) {
+                double length = 0;
+                for(int i = 1; i < cycle.length; i++) length += weights[(int) cycle[i]];
+                if(length > threshold || length >= 1) continue;
+                for(int i = 1; i < cycle.length; i++) {
+                    int v = (int) cycle[i];
+                    weights[v] *= 1 + EPSILON;
+                    loads[v]++;
+                }
+                routed++;
+            }
+        }
+        minLength = 1;
+        for(double[] cycle: findCycles(pool)) minLength = Math.min(minLength, cycle[0]);
+    }
+
+    /**
+     * @return The lightest cycle lighter than 1 per source, as its weight followed by its nodes.
+     */
+    private List<double[]> findCycles(ForkJoinPool pool) {
+        CycleTask task = new CycleTask(0, nodes.length, pool != null);
+        if(pool == null) return task.compute();
+        else if(ForkJoinTask.inForkJoinPool()) return task.invoke();
+        else return pool.invoke(task);
+    }
+
+    /**
+     * Finds the lightest cycles of a range of sources, splits it in halves down to CHUNK_SIZE sources.
+     */
+    private class CycleTask extends RecursiveTask<List<double[]>> {
+
+        private final int from;
+        private final int to;
+        private final boolean parallel;
+
+        private CycleTask(int from, int to, boolean parallel) {
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected List<double[]> compute() {
+            if(parallel && to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                CycleTask right = new CycleTask(middle, to, true);
+                right.fork();
+                List<double[]> cycles = new CycleTask(from, middle, true).compute();
+                cycles.addAll(right.join());
+                return cycles;
+            }
+            List<double[]> cycles = new ArrayList<>();
+            Dijkstra dijkstra = new Dijkstra(weights.length);
+            for(int i = from; i < to; i++) {
+                double[] cycle = dijkstra.findCycle(nodes[i]);
+                if(cycle != null) cycles.add(cycle);
+            }
+            return cycles;
+        }
+    }
+
+    /**
+     * Node weighted Dijkstra on the int arrays, with a binary heap of (distance, node) entries.
+     */
+    private class Dijkstra {
+
+        private final double[] distances;
+        private final int[] parents;
+        private final int[] visited; // Stamp of the search, instead of clearing the arrays
+        private int stamp = 0;
+        private double[] heapKeys = new double[64];
+        private int[] heapNodes = new int[64];
+        private int heapSize;
+
+        private Dijkstra(int n) {
+            distances = new double[n];
+            parents = new int[n];
+            visited = new int[n];
+        }
+
+        /**
+         * The lightest cycle whose smallest node is the source, so every cycle is found from one source only.
+         * @return The weight followed by the nodes of the cycle, or null if there is none lighter than 1.
+         */
+        private double[] findCycle(int source) {
+            stamp++;
+            heapSize = 0;
+            double best = 1;
+            int last = -1;
+            distances[source] = weights[source];
+            visited[source] = stamp;
+            push(weights[source], source);
+            while(heapSize > 0) {
+                double distance = heapKeys[0];
+                int v = pop();
+                if(distance > distances[v]) continue;
+                if(distance >= best) break;
+                for(int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    int w = targets[i];
+                    if(w == source) {
+                        best = distance;
+                        last = v;
+                    } else if(w > source) {
+                        double next = distance + weights[w];
+                        if(visited[w] != stamp || next < distances[w]) {
+                            visited[w] = stamp;
+                            distances[w] = next;
+                            parents[w] = v;
+                            push(next, w);
+                        }
+                    }
+                }
+            }
+            if(last == -1) return null;
+            int length = 1;
+            for(int v = last; v != source; v = parents[v]) length++;
+            double[] cycle = new double[length + 1];
+            cycle[0] = best;
+            int j = 1;
+            for(int v = last; v != source; v = parents[v]) cycle[j++] = v;
+            cycle[j] = source;
+            return cycle;
+        }
+
+        private void push(double key, int node) {
+            if(heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            }
+            int i = heapSize++;
+            while(i > 0 && heapKeys[(i - 1) >>> 1] > key) {
+                int parent = (i - 1) >>> 1;
+                heapKeys[i] = heapKeys[parent];
+                heapNodes[i] = heapNodes[parent];
+                i = parent;
+            }
+            heapKeys[i] = key;
+            heapNodes[i] = node;
+        }
+
+        private int pop() {
+            int top = heapNodes[0];
+            double key = heapKeys[--heapSize];
+            int node = heapNodes[heapSize];
+            int i = 0;
+            while(2 * i + 1 < heapSize) {
+                int child = 2 * i + 1;
+                if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+                if(heapKeys[child] >= key) break;
+                heapKeys[i] = heapKeys[child];
+                heapNodes[i] = heapNodes[child];
+                i = child;
+            }
+            heapKeys[i] = key;
+            heapNodes[i] = node;
+            return top;
+        }
+    }
+
+    /**
+     * @return The value of the scaled packing rounded up, a lower bound for the solution.
+     */
+    public int getLowerBound() {
+        int maxLoad = 0;
+        for(int v: nodes) maxLoad = Math.max(maxLoad, loads[v]);
+        return (maxLoad == 0) ? 0 : (routed + maxLoad - 1) / maxLoad;
+    }
+
+    /**
+     * @return The fractional DFVS of every dense index: the weights scaled so that every cycle weighs at least 1.
+     */
+    public double[] getNodeValues() {
+        double[] values = new double[weights.length];
+        for(int v: nodes) values[v] = weights[v] / minLength;
+        return values;
+    }
+}
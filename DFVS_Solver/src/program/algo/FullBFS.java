@@ -2,10 +2,7 @@ package program.algo;
 
 import program.model.Cycle;
 import program.model.Graph;
-import program.model.Node;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,18 +13,11 @@ public abstract class FullBFS {
         List<Cycle> cycles = graph.getPairCycles(); // TODO in rare cases (e.g. 'email'), it can be beneficial to break after the first cycle is found
         int minSize = 2;
 
-        // When there are no cycles of size 2, look for shortest cycles with BFS
+        // When there are no cycles of size 2, look for shortest cycles with the bit parallel BFS
         if(cycles.size() == 0) {
-            minSize = Integer.MAX_VALUE;
-            for (Node node : graph.getNodes()) { // Find the best cycle for each node
-                Cycle cycle = SimpleBFS.findBestCycle(graph, node, minSize);
-
-                // Replace the min branch size when found better one
-                if (cycle != null) {
-                    cycles.add(cycle);
-                    minSize = Math.min(cycle.size(), minSize);
-                }
-            }
+            Cycle cycle = BitBFS.findShortestCycle(graph);
+            if(cycle == null) throw new RuntimeException("Full BFS didn't found a cycle!");
+            return cycle;
         }
 
         // Filter out all cycles which are longer than the min branch size
@@ -35,12 +25,10 @@ public abstract class FullBFS {
         List<Cycle> minCycles = cycles.stream().filter(cycle -> cycle.size() == finalMinSize).collect(Collectors.toList());
 
         // Set cycle count for every node
-        for(Node node: graph.getNodes()) {
-            node.cycleCount = 0;
-            for(Cycle cycle: cycles) {
-                if(cycle.contains(node)) {
-                    node.cycleCount++;
-                }
+        int[] cycleCount = new int[graph.getCapacity()];
+        for(Cycle cycle: cycles) {
+            for(int i = 0; i < cycle.size(); i++) {
+                cycleCount[cycle.get(i)]++;
             }
         }
 
@@ -48,13 +36,13 @@ public abstract class FullBFS {
         Cycle shortestCycle = null;
         int maxCycleCount = 0;
         for(Cycle cycle: minCycles) {
-            int cycleCount = 0;
-            for(Node node: cycle.getNodes()) {
-                cycleCount += node.cycleCount;
+            int count = 0;
+            for(int i = 0; i < cycle.size(); i++) {
+                count += cycleCount[cycle.get(i)];
             }
-            if(cycleCount > maxCycleCount) { // if new max found, replace the current best cycle
+            if(count > maxCycleCount) { // if new max found, replace the current best cycle
                 shortestCycle = cycle;
-                maxCycleCount = cycleCount;
+                maxCycleCount = count;
             }
         }
 
@@ -64,8 +52,7 @@ public abstract class FullBFS {
         }
 
         // Sort nodes in cycle by their frequency in other cycles
-        shortestCycle.getNodes().sort(Comparator.comparing(Node::getCycleCount));
-        Collections.reverse(shortestCycle.getNodes());
+        shortestCycle.sortDescending(cycleCount);
         return shortestCycle;
     }
 }
@@ -0,0 +1,90 @@
+package program.algo;
+
+import program.model.Graph;
+
+import java.util.List;
+
+public abstract class Heuristic {
+
+    /**
+     * Computes a feedback vertex set as upper bound: greedy removal of the node with the highest degree product,
+     * followed by a local search that puts back every node which is not needed anymore.
+     * @param graph The graph, stays unchanged.
+     * @return The dense indices of the solution.
+     */
+    public static List<Integer> upperBound(Graph graph) {
+        List<Integer> S = greedy(graph);
+        shrink(graph, S);
+        return S;
+    }
+
+    /**
+     * Removes the node with the most (in * out) possible cycles through it until the graph is acyclic.
+     * The reduction rules are applied after each removal.
+     */
+    private static List<Integer> greedy(Graph graph) {
+        Graph copy = graph.copy();
+        List<Integer> S = Reduction.applyRules(copy, true);
+        while(copy.getNodeCount() > 0) {
+            int bestNode = -1;
+            long bestScore = -1;
+            for(int node = copy.nextNode(0); node != -1; node = copy.nextNode(node + 1)) {
+                long score = (long) copy.getInDegree(node) * copy.getOutDegree(node);
+                if(score > bestScore) {
+                    bestNode = node;
+                    bestScore = score;
+                }
+            }
+            copy.removeNode(bestNode);
+            S.add(bestNode);
+            S.addAll(Reduction.applyRules(copy, false));
+        }
+        return S;
+    }
+
+    /**
+     * Tries to put back the nodes of the solution, the last removed ones first.
+     * A node can be put back if it isn't part of a cycle in the graph without the other solution nodes.
+     */
+    private static void shrink(Graph graph, List<Integer> S) {
+        int capacity = graph.getCapacity();
+        boolean[] removed = new boolean[capacity];
+        for(int node: S) removed[node] = true;
+
+        int[] visited = new int[capacity];
+        int[] queue = new int[capacity];
+        int[] buffer = new int[capacity];
+        int stamp = 0;
+        for(int i = S.size() - 1; i >= 0; i--) {
+            int node = S.get(i);
+            removed[node] = false;
+            if(isOnCycle(graph, node, removed, visited, ++stamp, queue, buffer)) {
+                removed[node] = true;
+            } else {
+                S.remove(i);
+            }
+        }
+    }
+
+    /**
+     * BFS from the root over the nodes which are not removed.
+     * @return True if the root reaches itself.
+     */
+    private static boolean isOnCycle(Graph graph, int root, boolean[] removed, int[] visited, int stamp, int[] queue, int[] buffer) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        while(head < tail) {
+            int node = queue[head++];
+            int count = graph.getOutIds(node, buffer);
+            for(int i = 0; i < count; i++) {
+                int out = buffer[i];
+                if(out == root) return true;
+                if(removed[out] || visited[out] == stamp) continue;
+                visited[out] = stamp;
+                queue[tail++] = out;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+package program.algo;
+
+import program.log.Log;
+import program.model.Graph;
+import program.model.Instance;
+import program.utils.PerformanceTimer;
+import program.utils.Timer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+/**
+ * Alternative solve mode for instances which are too large for the exact branching: the heuristic solution of every
+ * cyclic sub graph is improved by simulated annealing, with one independent random seed per thread.
+ */
+public abstract class LocalSearchSolver {
+
+    public static void solveInstance(SolverContext context) {
+
+        Instance instance = context.instance;
+        PerformanceTimer timer = context.performanceTimer;
+
+        // Start Timer
+        context.timer.start();
+
+        // Preprocessing
+        timer.start();
+        Log.debugLog(instance.NAME, "---------- " + instance.NAME + " (n = " + instance.N + ", m = " + instance.M + ", k = " + instance.OPTIMAL_K + ") ----------");
+        Preprocessing.preprocess(instance);
+        instance.S.addAll(instance.preprocessedS);
+        Log.debugLog(instance.NAME, "Found " + instance.subGraphs.size() + " cyclic sub graph(s) with n = " + instance.subGraphs.stream().map(Graph::getNodeCount).collect(Collectors.toList()));
+        for (Graph subGraph : instance.subGraphs) {
+            List<Integer> reduceSubS = Reduction.applyRules(subGraph, true);
+            addToSolution(instance, subGraph, reduceSubS);
+        }
+        instance.startK = instance.S.size();
+        instance.preRemovedNodes = instance.N - instance.subGraphs.stream().mapToInt(Graph::getNodeCount).sum();
+        timer.log(PerformanceTimer.MethodType.PREPROCESSING);
+
+        // Start solutions
+        timer.start();
+        int[] sizes = new int[instance.subGraphs.size()];
+        List<List<Integer>> solutions = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            List<Integer> S = Heuristic.upperBound(instance.subGraphs.get(i));
+            solutions.add(S);
+            sizes[i] = S.size();
+        }
+        report(context, sizes);
+        timer.log(PerformanceTimer.MethodType.HEURISTIC);
+
+        // Improve the small sub graphs first, they converge fast
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) order.add(i);
+        order.sort(Comparator.comparingInt(i -> instance.subGraphs.get(i).getNodeCount()));
+
+        ForkJoinPool pool = (context.parallelism <= 1) ? null : (context.sharedPool != null) ? context.sharedPool : new ForkJoinPool(context.parallelism);
+        try {
+            for (int i : order) {
+                if (context.timer.isTimeout()) break;
+                Graph subGraph = instance.subGraphs.get(i);
+                List<Integer> initialS = solutions.get(i);
+                List<List<Integer>> results = new ArrayList<>();
+                if (pool == null) {
+                    results.add(SimulatedAnnealing.run(subGraph, initialS, context.seed, context.timer, size -> improve(context, sizes, i, size)));
+                } else {
+                    List<ForkJoinTask<List<Integer>>> tasks = new ArrayList<>();
+                    for (int thread = 0; thread < context.parallelism; thread++) {
+                        long seed = context.seed + thread;
+                        tasks.add(pool.submit(() -> SimulatedAnnealing.run(subGraph, initialS, seed, context.timer, size -> improve(context, sizes, i, size))));
+                    }
+                    for (ForkJoinTask<List<Integer>> task : tasks) results.add(task.join());
+                }
+                for (List<Integer> S : results) {
+                    if (S.size() < solutions.get(i).size()) solutions.set(i, S);
+                }
+            }
+        } finally {
+            if (pool != null && pool != context.sharedPool) pool.shutdownNow();
+        }
+
+        // Stop Timer
+        Long time = context.timer.stop();
+
+        // Merge the results of the sub graphs
+        for (int i = 0; i < sizes.length; i++) {
+            addToSolution(instance, instance.subGraphs.get(i), solutions.get(i));
+        }
+
+        // Verify
+        instance.solvedK = instance.S.size();
+        boolean verified = instance.solvedK == instance.OPTIMAL_K;
+
+        // Log
+        timer.printResult(instance.NAME);
+        Log.mainLog(instance, time, timer.getPackingMillis(), verified);
+        Log.debugLog(instance.NAME, "Local search found solution with k = " + instance.S.size() + " in " + Timer.format(time), !verified && instance.OPTIMAL_K != -1);
+    }
+
+    /**
+     * Called by the runs when they found a better solution for the sub graph.
+     */
+    private static void improve(SolverContext context, int[] sizes, int index, int size) {
+        synchronized (sizes) {
+            if (size >= sizes[index]) return;
+            sizes[index] = size;
+            report(context, sizes);
+        }
+    }
+
+    /**
+     * Logs the current size of the whole solution with the time since the start.
+     */
+    private static void report(SolverContext context, int[] sizes) {
+        Instance instance = context.instance;
+        int k = instance.S.size();
+        for (int size : sizes) k += size;
+        long millis = context.timer.getMillis();
+        instance.solutionSizes.add(new long[]{millis, k});
+        Log.debugLog(instance.NAME, "Local search: k = " + k + " after " + Timer.format(millis));
+    }
+
+    /**
+     * Maps the dense indices of the graph back to the original node ids and adds them to the solution.
+     */
+    private static void addToSolution(Instance instance, Graph graph, List<Integer> S) {
+        for (Integer node : S) {
+            instance.S.add(graph.getId(node));
+        }
+    }
+}
@@ -1,145 +1,300 @@
 package program.algo;
 
-import program.model.Component;
 import program.model.Cycle;
 import program.model.Graph;
-import program.model.Node;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Packing of node disjoint components (cycles, or cliques of 2-cycles etc. with a higher k) in the graph of the search.
+ * The size of the packing is a lower bound for the solution.
+ * The packing is updated by deltas instead of copies: a change of the graph only drops the components which lost a
+ * node and repairs the packing around them. Every node knows its component, so these are found without a scan.
+ * The nodes outside of the packing never contain a cycle. A new cycle among them must therefore go through a node of
+ * a dropped component or through an arc added by a bypass, so the repair only searches from these nodes.
+ * All changes are recorded on a trail, so the branching can undo them together with the graph.
+ */
 public class PackingManager {
 
-    private Map<Integer, Node> initialNodes;
-    private Graph packingGraph;
+    // Components: nodes & k of each. Dropped components stay in the arrays, so backtrack() can bring them back
+    private int[][] components;
+    private int[] componentKs;
+    private int componentCount = 0;
+    private int size = 0;
 
-    private List<Cycle> packing = new ArrayList<>();
+    // Node -> index of the packed component containing it, or -1
+    private final int[] owners;
 
-    public PackingManager(Graph initialGraph) {
-        // Copy nodes
-        Graph copy = initialGraph.copy();
-        initialNodes = copy.getNodeMap();
-        // Copy into packing graph
-        packingGraph = initialGraph.copy();
+    // Undo trail: an added component is stored as its index, a dropped one as ~index
+    private int[] trail = new int[16];
+    private int trailSize = 0;
 
-        initPacking();
-    }
+    // BFS workspace, the visited nodes are marked with the stamp of the search instead of clearing the arrays
+    private final int[] stamps;
+    private int stamp = 0;
+    private final int[] parents;
+    private final int[] queue;
+    private final int[] buffer;
 
-    public PackingManager(PackingManager oldPm, List<Integer> deleteIds, List<Integer> forbiddenIds) {
-        this.initialNodes = oldPm.initialNodes;
-        this.packingGraph = oldPm.packingGraph.copy();
+    /**
+     * Greedy packing of the graph: first the 2-cycles, upgraded to larger components by the packing rules, then the
+     * shortest cycles until the rest of the graph is acyclic.
+     */
+    public PackingManager(Graph graph) {
+        int n = graph.getCapacity();
+        components = new int[16][];
+        componentKs = new int[16];
+        owners = new int[n];
+        Arrays.fill(owners, -1);
+        stamps = new int[n];
+        parents = new int[n];
+        queue = new int[n];
+        buffer = new int[n];
 
-        for(Cycle cycle: oldPm.packing) {
-            boolean deleted = false;
-            for(Integer deleteId: deleteIds) {
-                deleted = deleted || cycle.containsId(deleteId);
-            }
-            if(!deleted) {
-                this.packing.add(cycle); // TODO necessary to copy cycle?
-            } else {
-                // Re-add cycle to the graph
-                for(Node node: cycle.getNodes()) {
-                    if(!deleteIds.contains(node.id)) { // Only add the not deleted nodes
-                        Node initialNode = initialNodes.get(node.id).copy();
-                        this.packingGraph.addInitialNode(initialNode);
-                    }
-                }
-            }
-        }
+        // The packed nodes are removed from a copy, so the rules and the BFS only see the free nodes
+        Graph packingGraph = graph.copy();
+        Cycle pair;
+        while((pair = packingGraph.getFirstPairCycle()) != null) {
 
-        // Clean up deleted nodes from packing graph
-        for(Integer deleteId: deleteIds) {
-            if(packingGraph.hasNode(deleteId)) {
-                packingGraph.removeNode(deleteId);
-            }
+            // Look for fully connected triangles, quads etc.
+            PackingRules.upgradeFullyConnected(pair, packingGraph);
+            if(pair.size() == 2) PackingRules.upgradeK2Quad(pair, packingGraph);
+
+            removePacked(packingGraph, pair);
         }
 
-        for(Integer forbiddenId: forbiddenIds) {
-            if(!packingGraph.hasNode(forbiddenId)) {
-                Node forbiddenNode = initialNodes.get(forbiddenId);
-                forbiddenNode.forbidden = true;
-                packingGraph.addInitialNode(forbiddenNode);
-            } else {
-                Node forbiddenNode = packingGraph.getNode(forbiddenId);
-                forbiddenNode.forbidden = true;
-            }
+        while(!DAG.isDAG(packingGraph)) {
+            Cycle cycle = LightBFS.findShortestCycle(packingGraph);
+
+            if(cycle.size() == 3) PackingRules.upgradeTriforce(cycle, packingGraph);
+            if(cycle.size() == 3) PackingRules.upgradeK2Penta(cycle, packingGraph);
+
+            removePacked(packingGraph, cycle);
         }
-        initPacking();
+
+        // The initial packing can't be undone
+        trailSize = 0;
     }
 
-    public void addDeletedNodes(List<Integer> deletedIds) {
-        // Re-add deleted ids
-        for(Integer deletedId: deletedIds) {
-            Node initialNode = initialNodes.get(deletedId).copy();
-            packingGraph.addInitialNode(initialNode);
-        }
+    private PackingManager(PackingManager packing) {
+        int n = packing.owners.length;
+        components = Arrays.copyOf(packing.components, packing.components.length);
+        componentKs = packing.componentKs.clone();
+        componentCount = packing.componentCount;
+        size = packing.size;
+        owners = packing.owners.clone();
+        stamps = new int[n];
+        parents = new int[n];
+        queue = new int[n];
+        buffer = new int[n];
     }
 
-    public void removeForbiddenNodes(List<Integer> forbiddenIds) {
-        List<Cycle> remove = new ArrayList<>();
-        for(Cycle cycle: packing) {
-            for(Integer forbiddenId: forbiddenIds) {
-                if(cycle.containsId(forbiddenId)) remove.add(cycle);
-            }
-        }
-        for(Cycle cycle: remove) {
-            packing.remove(cycle);
-        }
+    /**
+     * Copy for another graph copy, without the trail. The node arrays of the components are shared, they never change.
+     */
+    public PackingManager copy() {
+        return new PackingManager(this);
+    }
+
+    private void removePacked(Graph packingGraph, Cycle component) {
+        addComponent(component.getNodes(), component.getK());
+        for(int node: component.getNodes()) packingGraph.removeNode(node);
     }
 
     public int size() {
-        return packing.stream().mapToInt(Component::getK).sum();
+        return size;
     }
 
-    private void fillWithCostTPacking() {
-        List<Cycle> S = SimpleSolver.dfvsSolve(packingGraph.copy());
-        Cycle comp = new Cycle();
-        for(Cycle cycle: S) {
-            for(Node node: cycle.getNodes()) {
-                if(!comp.containsId(node.id)) {
-                    comp.add(new Node(node.id));
-                    packingGraph.removeNode(node.id);
+    /**
+     * @return The current position on the trail, to be passed to backtrack().
+     */
+    public int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Updates the packing for the changes of the graph since the mark. The components with a removed node are
+     * dropped, then new cycles are packed through their alive nodes and the tails of the added arcs.
+     * @param graph The reversible graph of the search.
+     * @param mark The position on the trail of the graph.
+     */
+    public void update(Graph graph, int mark) {
+        int[] removedNodes = graph.getRemovedNodes(mark);
+        int[] addedArcTails = graph.getAddedArcTails(mark);
+        int[] seeds = new int[addedArcTails.length + removedNodes.length];
+        int seedCount = 0;
+        stamp++;
+        for(int r: removedNodes) {
+            int component = owners[r];
+            if(component == -1) continue;
+            dropComponent(component);
+            for(int node: components[component]) {
+                if(graph.hasNode(node) && stamps[node] != stamp) {
+                    if(seedCount == seeds.length) seeds = Arrays.copyOf(seeds, seedCount * 2 + 1);
+                    seeds[seedCount++] = node;
+                    stamps[node] = stamp;
                 }
             }
         }
-        comp.setK(S.size());
-        packing.add(comp);
-        //System.out.println("Add component " + comp + " with k = " + comp.getK());
-        //System.out.println(S.size());
-        //int startSize = size();
-        //initPacking();
-        //System.out.println("Improved packing: " + startSize + " -> " + size());
-        //if(size() - startSize < S.size()) System.err.println("Didn't found the best packing");
-    }
+        for(int tail: addedArcTails) {
+            if(stamps[tail] != stamp) {
+                if(seedCount == seeds.length) seeds = Arrays.copyOf(seeds, seedCount * 2 + 1);
+                seeds[seedCount++] = tail;
+                stamps[tail] = stamp;
+            }
+        }
 
-    public void initPacking() {
+        pack(graph, seeds, seedCount);
+    }
 
-        Cycle pair;
-        while((pair = packingGraph.getFirstPairCycle()) != null) {
+    /**
+     * Packs cycles through the free seeds, 2-cycles first like the initial packing.
+     */
+    private void pack(Graph graph, int[] seeds, int seedCount) {
+        for(int i = 0; i < seedCount; i++) {
+            if(isFree(graph, seeds[i])) packPair(graph, seeds[i]);
+        }
+        for(int i = 0; i < seedCount; i++) {
+            if(isFree(graph, seeds[i])) packCycle(graph, seeds[i]);
+        }
+    }
 
-            // Look for fully connected triangles, quads etc.
-            PackingRules.upgradeFullyConnected(pair, packingGraph);
-            if(pair.size() == 2) PackingRules.upgradeK2Quad(pair, packingGraph);
+    /**
+     * Local search with 1-for-2 swaps: a packed cycle is dropped and replaced by the cycles through its nodes over the
+     * free nodes, if these are at least two. First every node of the cycle gets a cycle which avoids the other ones,
+     * then cycles through the rest of them are packed. A swap is undone if the packing didn't grow.
+     * The changes are recorded on the trail like the updates.
+     * @param target Stops as soon as the size is larger than this.
+     * @param deadline The System.nanoTime() at which the search stops.
+     * @return True if the size is larger than the target.
+     */
+    public boolean improve(Graph graph, int target, long deadline) {
+        boolean improved = true;
+        while(improved && size <= target) {
+            improved = false;
+            for(int c = 0; c < componentCount && size <= target; c++) {
+                if(System.nanoTime() > deadline) return false;
+                int[] nodes = components[c];
+                if(componentKs[c] != 1 || owners[nodes[0]] != c) continue;
+                int oldSize = size;
+                int mark = mark();
+                dropComponent(c);
+                // Cycles which contain only one node of the dropped cycle, the others are blocked meanwhile
+                for(int node: nodes) owners[node] = -2;
+                for(int node: nodes) {
+                    owners[node] = -1;
+                    packCycle(graph, node);
+                    if(owners[node] == -1) owners[node] = -2;
+                }
+                for(int node: nodes) {
+                    if(owners[node] == -2) owners[node] = -1;
+                }
+                pack(graph, nodes, nodes.length);
+                if(size > oldSize) improved = true;
+                else backtrack(mark);
+            }
+        }
+        return size > target;
+    }
 
+    private boolean isFree(Graph graph, int node) {
+        return owners[node] == -1 && graph.hasNode(node);
+    }
 
-            for (Node node : pair.getNodes()) {
-                if(!node.forbidden) packingGraph.removeNode(node.id);
+    /**
+     * Packs a 2-cycle through the node, extended by all free nodes which have 2-cycles to each of its nodes.
+     */
+    private void packPair(Graph graph, int node) {
+        int count = graph.getOutIds(node, buffer);
+        int[] clique = new int[count + 1];
+        int cliqueSize = 0;
+        clique[cliqueSize++] = node;
+        for(int i = 0; i < count; i++) {
+            int out = buffer[i];
+            if(!isFree(graph, out)) continue;
+            boolean fullyConnected = true;
+            for(int j = 0; j < cliqueSize && fullyConnected; j++) {
+                fullyConnected = graph.hasArc(out, clique[j]) && (j == 0 || graph.hasArc(clique[j], out));
             }
-            packing.add(pair);
+            if(fullyConnected) clique[cliqueSize++] = out;
+        }
+        if(cliqueSize > 1) addComponent(Arrays.copyOf(clique, cliqueSize), cliqueSize - 1);
+    }
 
+    /**
+     * Packs the shortest cycle through the node over the free nodes (BFS until an in neighbor of the node is reached).
+     */
+    private void packCycle(Graph graph, int node) {
+        stamp++;
+        stamps[node] = stamp;
+        int head = 0, tail = 0;
+        queue[tail++] = node;
+        while(head < tail) {
+            int v = queue[head++];
+            int count = graph.getOutIds(v, buffer);
+            for(int i = 0; i < count; i++) {
+                int out = buffer[i];
+                if(out == node) {
+                    // The cycle is the path to v, collected backwards
+                    int length = 1;
+                    for(int w = v; w != node; w = parents[w]) length++;
+                    int[] cycle = new int[length];
+                    int j = 0;
+                    for(int w = v; w != node; w = parents[w]) cycle[j++] = w;
+                    cycle[j] = node;
+                    addComponent(cycle, 1);
+                    return;
+                }
+                if(stamps[out] != stamp && owners[out] == -1) {
+                    stamps[out] = stamp;
+                    parents[out] = v;
+                    queue[tail++] = out;
+                }
+            }
         }
+    }
 
-        while(!DAG.isDAGFast(packingGraph)) {
-            Cycle cycle = LightBFS.findShortestCycle(packingGraph);
+    private void addComponent(int[] nodes, int k) {
+        if(componentCount == components.length) {
+            components = Arrays.copyOf(components, componentCount * 2);
+            componentKs = Arrays.copyOf(componentKs, componentCount * 2);
+        }
+        components[componentCount] = nodes;
+        componentKs[componentCount] = k;
+        for(int node: nodes) owners[node] = componentCount;
+        size += k;
+        record(componentCount++);
+    }
 
-            if(cycle.size() == 3) PackingRules.upgradeTriforce(cycle, packingGraph);
-            if(cycle.size() == 3) PackingRules.upgradeK2Penta(cycle, packingGraph);
+    private void dropComponent(int component) {
+        for(int node: components[component]) owners[node] = -1;
+        size -= componentKs[component];
+        record(~component);
+    }
 
-            for (Node node : cycle.getNodes()) {
-                if(!node.forbidden) packingGraph.removeNode(node.id);
+    /**
+     * Undoes all changes recorded after the mark, in reversed order.
+     * @param mark The position returned by mark().
+     */
+    public void backtrack(int mark) {
+        while(trailSize > mark) {
+            int entry = trail[--trailSize];
+            if(entry >= 0) {
+                // Added components are on top of the arrays
+                for(int node: components[entry]) owners[node] = -1;
+                size -= componentKs[entry];
+                components[entry] = null;
+                componentCount--;
+            } else {
+                int component = ~entry;
+                for(int node: components[component]) owners[node] = component;
+                size += componentKs[component];
             }
-            packing.add(cycle);
         }
     }
+
+    private void record(int entry) {
+        if(trailSize == trail.length) trail = Arrays.copyOf(trail, trailSize * 2);
+        trail[trailSize++] = entry;
+    }
 }
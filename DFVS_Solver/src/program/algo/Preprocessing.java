@@ -1,35 +1,56 @@
 package program.algo;
 
 import program.model.Graph;
-import program.model.Node;
+import program.model.GraphBuilder;
+import program.model.Instance;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public abstract class Preprocessing {
 
+    /**
+     * Applies the reduction rules to the initial graph and splits the kernel into its cyclic sub graphs.
+     * Instances loaded from the cache are preprocessed already and stay unchanged.
+     */
+    public static void preprocess(Instance instance) {
+        if(instance.preprocessedS != null) return;
+        Graph initialGraph = instance.subGraphs.get(0);
+        List<Integer> reduceS = Reduction.applyRules(initialGraph, true);
+        instance.preprocessedS = new ArrayList<>();
+        for(int node: reduceS) instance.preprocessedS.add(initialGraph.getId(node));
+        instance.subGraphs = findCyclicSubGraphs(initialGraph);
+    }
+
     /**
      * Splits up the graph into it's cyclic components by using the Tarjan's algorithm.
+     * The sub graphs get their own dense indices, but keep the original ids.
      */
     public static List<Graph> findCyclicSubGraphs(Graph graph) {
 
         // Find cyclic components
-        List<List<Node>> components = Tarjan.run(graph);
+        List<int[]> components = Tarjan.run(graph);
+
+        // Component number of every node
+        int[] componentIds = new int[graph.getCapacity()];
+        for(int i = 0; i < components.size(); i++) {
+            for(int node: components.get(i)) componentIds[node] = i;
+        }
 
         // Generate sub graphs
         List<Graph> subGraphs = new ArrayList<>();
-        for(List<Node> component: components) {
-            if(component.size() > 1) {
-                Graph subGraph = new Graph();
-                for(Node node: component) {
-                    for(Integer outId: node.getOutIds()) {
-                        Node out = graph.getNode(outId);
-                        if(component.contains(out)) { // Only add the arcs which are part of the subgraph
-                            subGraph.addArc(node.id, out.id);
+        for(int i = 0; i < components.size(); i++) {
+            int[] component = components.get(i);
+            if(component.length > 1) {
+                GraphBuilder subGraph = new GraphBuilder();
+                for(int node: component) {
+                    for(int out: graph.getOutIds(node)) {
+                        if(componentIds[out] == i) { // Only add the arcs which are part of the subgraph
+                            subGraph.addArc(graph.getId(node), graph.getId(out));
                         }
                     }
                 }
-                subGraphs.add(subGraph);
+                subGraphs.add(subGraph.build());
             }
         }
         return subGraphs;
@@ -37,57 +58,29 @@ public abstract class Preprocessing {
 
     /**
      * Improvement of the normal triangle rule that only needs one Node to only be in the fully connected graph
+     * @return The nodes which are part of the solution.
      */
-
-    public static void removePendantFullTrianglePP(Graph graph){
-        for(Node A: graph.getNodes()){
-            if(A.getOutIds().size()==2) {
-                int inEdges = (int) graph.getNodes().stream().filter(n -> n.getOutIds().contains(A.id)).count();
-                if (inEdges == 2) {
-                    Integer bId = A.getOutIds().get(0);
-                    Integer cId = A.getOutIds().get(1);
-                    Node B = graph.getNode(bId);
-                    Node C = graph.getNode(cId);
-                    if (B.getOutIds().contains(A.id) && B.getOutIds().contains(C.id)) {
-                        if (C.getOutIds().contains(B.id) && C.getOutIds().contains(A.id)) {
-                            graph.removeNode(A.id);
-                            graph.removeNode(B.id);
-                            graph.removeNode(C.id);
-                            Solver.instance.S.add(B.id);
-                            Solver.instance.S.add(C.id);
+    public static List<Integer> removePendantFullTrianglePP(Graph graph){
+        List<Integer> S = new ArrayList<>();
+        for(int a: graph.getNodeIds()){
+            if(!graph.hasNode(a)) continue;
+            if(graph.getOutDegree(a) == 2) {
+                if (graph.getInDegree(a) == 2) {
+                    int[] outIds = graph.getOutIds(a);
+                    int b = outIds[0];
+                    int c = outIds[1];
+                    if (graph.hasArc(b, a) && graph.hasArc(b, c)) {
+                        if (graph.hasArc(c, b) && graph.hasArc(c, a)) {
+                            graph.removeNode(a);
+                            graph.removeNode(b);
+                            graph.removeNode(c);
+                            S.add(b);
+                            S.add(c);
                         }
                     }
                 }
             }
         }
+        return S;
     }
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
@@ -1,7 +1,7 @@
 package program.algo;
 
 import program.model.Graph;
-import program.model.Node;
+import program.utils.PerformanceTimer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,41 +9,157 @@ import java.util.List;
 public abstract class Reduction {
 
     public static List<Integer> applyRules(Graph graph, boolean updateAll) {
+        return applyRules(graph, updateAll, null);
+    }
+
+    /**
+     * Applies the reduction rules to the updated nodes until no rule applies anymore. Besides the trivial rules these
+     * are the rules of Lin & Jou: CORE for the updated nodes and, only if all nodes are updated, DOME for the updated
+     * nodes and PIE for the whole graph whenever the other rules changed something. DOME & PIE cost more than they save
+     * on the small changes of a branching step, so they only run on the full passes (preprocessing, new sub graph).
+     * @param timer Collects the time & hits of PIE, CORE and DOME, may be null.
+     * @return The nodes which are part of the solution.
+     */
+    public static List<Integer> applyRules(Graph graph, boolean updateAll, PerformanceTimer timer) {
 
         if(updateAll) graph.setAllNodesUpdated();
 
         List<Integer> reduceS = new ArrayList<>();
-        List<Integer> updatedNodeIds;
-        while(!(updatedNodeIds = graph.getUpdatedNodeIds()).isEmpty()) {
-            for(Integer id: updatedNodeIds) {
-                Node node = graph.getNode(id);
-                node.updated = false;
-                if(node.getOutIdCount() == 0 || node.getInIdCount() == 0) { // trivial vertex
-                    graph.removeNode(node.id);
-                } else if(node.getOutIds().contains(node.id)) { // self loop
-                    graph.removeNode(node.id);
-                    reduceS.add(node.id);
-                } else if(node.getOutIdCount() == 1) { // chain rule (in >>> node -> out)
-                    Integer outId = node.getOutIds().get(0);
-                    Node out = graph.getNode(outId);
-                    for(Integer inId: node.getInIds()) {
-                        Node in = graph.getNode(inId);
-                        in.addOutId(outId);
-                        out.addInId(inId);
+        int[] updatedNodeIds = graph.getUpdatedNodeIds();
+        boolean changed = updatedNodeIds.length > 0;
+        while(true) {
+            for(; updatedNodeIds.length > 0; updatedNodeIds = graph.getUpdatedNodeIds()) {
+                for(int node: updatedNodeIds) {
+                    if(!graph.hasNode(node)) continue;
+                    graph.setUpdated(node, false);
+                    if(graph.getOutDegree(node) == 0 || graph.getInDegree(node) == 0) { // trivial vertex
+                        graph.removeNode(node);
+                    } else if(graph.hasArc(node, node)) { // self loop
+                        graph.removeNode(node);
+                        reduceS.add(node);
+                    } else if(graph.getOutDegree(node) == 1) { // chain rule (in >>> node -> out)
+                        graph.bypassNode(node);
+                    } else if(graph.getInDegree(node) == 1) { // chain rule (in -> node >>> out)
+                        graph.bypassNode(node);
+                    } else if(applyCoreRule(graph, node, reduceS, timer)) {
+                        // node and its neighbors are removed
+                    } else if(!updateAll || !applyDomeRule(graph, node, timer)) {
+                        continue;
                     }
-                    graph.removeNode(node.id);
-                } else if(node.getInIdCount() == 1) { // chain rule (in -> node >>> out)
-                    Integer inId = node.getInIds().get(0);
-                    Node in = graph.getNode(inId);
-                    for(Integer outId: node.getOutIds()) {
-                        Node out = graph.getNode(outId);
-                        out.addInId(inId);
-                        in.addOutId(outId);
-                    }
-                    graph.removeNode(node.id);
+                    changed = true;
                 }
             }
+            // PIE looks at the whole graph, so it only runs again when the other rules changed something
+            if(!updateAll || !changed || applyPieRule(graph, timer) == 0) break;
+            changed = false;
+            updatedNodeIds = graph.getUpdatedNodeIds();
         }
         return reduceS;
     }
+
+    /**
+     * CORE: if all arcs of the node are bidirected and its neighbors form a clique of 2-cycles, then all of its
+     * neighbors are in an optimal solution.
+     * @return True if the node and its neighbors were removed.
+     */
+    private static boolean applyCoreRule(Graph graph, int node, List<Integer> reduceS, PerformanceTimer timer) {
+        if(graph.getOutDegree(node) != graph.getInDegree(node)) return false;
+        long startTime = System.nanoTime();
+        int[] neighbors = graph.getOutIds(node);
+        boolean core = true;
+        for(int i = 0; i < neighbors.length && core; i++) {
+            core = graph.hasArc(neighbors[i], node);
+        }
+        for(int i = 0; i < neighbors.length && core; i++) {
+            for(int j = i + 1; j < neighbors.length && core; j++) {
+                core = graph.hasArc(neighbors[i], neighbors[j]) && graph.hasArc(neighbors[j], neighbors[i]);
+            }
+        }
+        if(core) {
+            for(int neighbor: neighbors) {
+                graph.removeNode(neighbor);
+                reduceS.add(neighbor);
+            }
+            graph.removeNode(node);
+        }
+        if(timer != null) {
+            timer.add(PerformanceTimer.MethodType.CORE, System.nanoTime() - startTime);
+            if(core) timer.logHits(PerformanceTimer.MethodType.CORE, neighbors.length);
+        }
+        return core;
+    }
+
+    /**
+     * DOME: removes the dominated arcs of the node. An arc u -> v, which is not bidirected, is dominated if every
+     * predecessor of u (over an arc which is not bidirected) is a predecessor of v, or every successor of v (over an
+     * arc which is not bidirected) is a successor of u. Every cycle through such an arc contains the nodes of a
+     * cycle without it.
+     * @return True if an arc was removed.
+     */
+    private static boolean applyDomeRule(Graph graph, int node, PerformanceTimer timer) {
+        long startTime = System.nanoTime();
+        int removed = 0;
+        for(int out: graph.getOutIds(node)) {
+            if(!graph.hasArc(out, node) && isDominated(graph, node, out)) {
+                graph.removeArc(node, out);
+                removed++;
+            }
+        }
+        for(int in: graph.getInIds(node)) {
+            if(!graph.hasArc(node, in) && isDominated(graph, in, node)) {
+                graph.removeArc(in, node);
+                removed++;
+            }
+        }
+        if(timer != null) {
+            timer.add(PerformanceTimer.MethodType.DOME, System.nanoTime() - startTime);
+            timer.logHits(PerformanceTimer.MethodType.DOME, removed);
+        }
+        return removed > 0;
+    }
+
+    private static boolean isDominated(Graph graph, int u, int v) {
+        boolean dominated = true;
+        for(int in: graph.getInIds(u)) {
+            if(!graph.hasArc(u, in) && !graph.hasArc(in, v)) {
+                dominated = false;
+                break;
+            }
+        }
+        if(dominated) return true;
+        for(int out: graph.getOutIds(v)) {
+            if(!graph.hasArc(out, v) && !graph.hasArc(u, out)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * PIE: removes the arcs, which are not bidirected, between different strongly connected components of the graph
+     * without its bidirected arcs. Every cycle through such an arc contains a 2-cycle.
+     * @return The number of removed arcs.
+     */
+    private static int applyPieRule(Graph graph, PerformanceTimer timer) {
+        long startTime = System.nanoTime();
+        List<int[]> components = Tarjan.runWithoutBidirected(graph);
+        int removed = 0;
+        if(components.size() > 1) {
+            int[] componentIds = new int[graph.getCapacity()];
+            for(int i = 0; i < components.size(); i++) {
+                for(int node: components.get(i)) componentIds[node] = i;
+            }
+            for(int node = graph.nextNode(0); node != -1; node = graph.nextNode(node + 1)) {
+                for(int out: graph.getOutIds(node)) {
+                    if(componentIds[node] != componentIds[out] && !graph.hasArc(out, node)) {
+                        graph.removeArc(node, out);
+                        removed++;
+                    }
+                }
+            }
+        }
+        if(timer != null) {
+            timer.add(PerformanceTimer.MethodType.PIE, System.nanoTime() - startTime);
+            timer.logHits(PerformanceTimer.MethodType.PIE, removed);
+        }
+        return removed;
+    }
 }
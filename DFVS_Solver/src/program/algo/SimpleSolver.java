@@ -2,7 +2,6 @@ package program.algo;
 
 import program.model.Cycle;
 import program.model.Graph;
-import program.model.Node;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,7 +12,7 @@ public abstract class SimpleSolver {
 
         // Break to skip the redundant dfvs_branch()-call when k = 0
         if (k <= 0) {
-            if (DAG.isDAGFast(graph)) {
+            if (DAG.isDAG(graph)) {
                 return new ArrayList<>();
             }
             else return null;
@@ -22,9 +21,9 @@ public abstract class SimpleSolver {
         Cycle cycle = LightBFS.findShortestCycle(graph);
 
         List<Integer> forbiddenIds = new ArrayList<>();
-        for (Node node: cycle.getNodes()) {
+        for (int node: cycle.getNodes()) {
             Graph copy = graph.copy();
-            copy.removeNode(node.id);
+            copy.removeNode(node);
             copy.removeForbiddenNodes(forbiddenIds);
             //List<Integer> reduceS = Reduction.applyRules(copy, false);
             //int nextK = k - 1 - reduceS.size();
@@ -36,7 +35,7 @@ public abstract class SimpleSolver {
                 S.add(cycle);
                 return S;
             }
-            forbiddenIds.add(node.id);
+            forbiddenIds.add(node);
         }
         return null;
     }
@@ -0,0 +1,263 @@
+package program.algo;
+
+import program.model.Graph;
+import program.utils.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Simulated annealing for the DFVS problem (Galinier et al.): the kept nodes are held in a topological order,
+ * a move inserts a solution node into the order and removes the nodes which conflict with it.
+ */
+public class SimulatedAnnealing {
+
+    // Parameters
+    private static final double INITIAL_TEMPERATURE = 0.6;
+    private static final double COOLING = 0.99;
+    private static final int MOVES_PER_NODE = 5; // Accepted moves per temperature step and node
+    private static final int MAX_FAILS = 50; // Temperature steps without improvement before stopping
+    private static final int MAX_TRIES = 10; // Tried moves per accepted move before the temperature step ends
+
+    // Label gap between neighbors in the order after relabeling
+    private static final long GAP = 1L << 20;
+
+    // Adjacency of the graph as int arrays over the dense indices
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inTargets;
+
+    // Topological order of the kept nodes as linked list with increasing labels, head is the sentinel
+    private final int head;
+    private final int[] next;
+    private final int[] prev;
+    private final long[] labels;
+    private final boolean[] ordered;
+
+    // Solution nodes (not in the order), with their positions for removal in O(1)
+    private final int[] solution;
+    private final int[] solutionIndex;
+    private int solutionSize = 0;
+
+    private final SplittableRandom random;
+
+    private SimulatedAnnealing(Graph graph, long seed) {
+        int capacity = graph.getCapacity();
+        outOffsets = new int[capacity + 1];
+        inOffsets = new int[capacity + 1];
+        for(int node = 0; node < capacity; node++) {
+            outOffsets[node + 1] = outOffsets[node] + (graph.hasNode(node) ? graph.getOutDegree(node) : 0);
+            inOffsets[node + 1] = inOffsets[node] + (graph.hasNode(node) ? graph.getInDegree(node) : 0);
+        }
+        outTargets = new int[outOffsets[capacity]];
+        inTargets = new int[inOffsets[capacity]];
+        int[] buffer = new int[capacity];
+        for(int node = graph.nextNode(0); node != -1; node = graph.nextNode(node + 1)) {
+            int count = graph.getOutIds(node, buffer);
+            System.arraycopy(buffer, 0, outTargets, outOffsets[node], count);
+            count = graph.getInIds(node, buffer);
+            System.arraycopy(buffer, 0, inTargets, inOffsets[node], count);
+        }
+
+        head = capacity;
+        next = new int[capacity + 1];
+        prev = new int[capacity + 1];
+        labels = new long[capacity + 1];
+        ordered = new boolean[capacity + 1];
+        next[head] = head;
+        prev[head] = head;
+        labels[head] = Long.MIN_VALUE;
+        ordered[head] = true;
+
+        solution = new int[capacity];
+        solutionIndex = new int[capacity];
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Builds the order from scratch until no improvement is found in MAX_FAILS temperature steps or the time is up.
+     * Starting with the order of a good solution doesn't work well, the first temperature steps walk away from it.
+     * @param graph The graph, stays unchanged.
+     * @param initialS The best known solution in dense indices, returned if no better one is found.
+     * @param seed The seed of the random moves.
+     * @param timer The timer of the deadline.
+     * @param onImprovement Called with the new size whenever the best solution improves.
+     * @return The best found solution in dense indices.
+     */
+    public static List<Integer> run(Graph graph, List<Integer> initialS, long seed, Timer timer, IntConsumer onImprovement) {
+        SimulatedAnnealing sa = new SimulatedAnnealing(graph, seed);
+        for(int node = graph.nextNode(0); node != -1; node = graph.nextNode(node + 1)) {
+            sa.solutionIndex[node] = sa.solutionSize;
+            sa.solution[sa.solutionSize++] = node;
+        }
+
+        int n = graph.getNodeCount();
+        List<Integer> bestS = initialS;
+        int runBestSize = n;
+        int maxMoves = MOVES_PER_NODE * n;
+        double temperature = INITIAL_TEMPERATURE;
+        int fails = 0;
+        while(fails < MAX_FAILS && sa.solutionSize > 0) {
+            boolean failure = true;
+            int moves = 0;
+            for(long tries = 1; moves < maxMoves && tries <= (long) MAX_TRIES * maxMoves; tries++) {
+                if((tries & 1023) == 0 && timer.isTimeout()) return bestS;
+                int node = sa.solution[sa.random.nextInt(sa.solutionSize)];
+                boolean after = sa.random.nextBoolean();
+                int delta = sa.countConflicts(node, after) - 1;
+                if(delta <= 0 || Math.exp(-delta / temperature) > sa.random.nextDouble()) {
+                    sa.insert(node, after);
+                    moves++;
+                    if(sa.solutionSize < runBestSize) {
+                        runBestSize = sa.solutionSize;
+                        failure = false;
+                    }
+                    if(sa.solutionSize < bestS.size()) {
+                        bestS = sa.getSolution();
+                        onImprovement.accept(bestS.size());
+                    }
+                }
+            }
+            fails = failure ? fails + 1 : 0;
+            temperature *= COOLING;
+        }
+        return bestS;
+    }
+
+    /**
+     * @param after True to insert the node right after its last in neighbor, else right before its first out neighbor.
+     * @return The number of ordered nodes which conflict with the node at this position.
+     */
+    private int countConflicts(int node, boolean after) {
+        int conflicts = 0;
+        if(after) {
+            long position = labels[lastInNeighbor(node)];
+            for(int i = outOffsets[node]; i < outOffsets[node + 1]; i++) {
+                int out = outTargets[i];
+                if(ordered[out] && labels[out] <= position) conflicts++;
+            }
+        } else {
+            int first = firstOutNeighbor(node);
+            if(first == head) return 0;
+            long position = labels[first];
+            for(int i = inOffsets[node]; i < inOffsets[node + 1]; i++) {
+                int in = inTargets[i];
+                if(ordered[in] && labels[in] >= position) conflicts++;
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Moves the node from the solution into the order and the conflicting nodes from the order into the solution.
+     */
+    private void insert(int node, boolean after) {
+        if(after) {
+            int last = lastInNeighbor(node);
+            long position = labels[last];
+            for(int i = outOffsets[node]; i < outOffsets[node + 1]; i++) {
+                int out = outTargets[i];
+                if(ordered[out] && labels[out] <= position) {
+                    if(out == last) last = prev[last];
+                    unlink(out);
+                }
+            }
+            removeFromSolution(node);
+            linkBefore(node, next[last]);
+        } else {
+            int first = firstOutNeighbor(node);
+            long position = (first == head) ? Long.MAX_VALUE : labels[first];
+            for(int i = inOffsets[node]; i < inOffsets[node + 1]; i++) {
+                int in = inTargets[i];
+                if(ordered[in] && labels[in] >= position) {
+                    if(in == first) first = next[first];
+                    unlink(in);
+                }
+            }
+            removeFromSolution(node);
+            linkBefore(node, first);
+        }
+    }
+
+    /**
+     * @return The ordered in neighbor with the highest label, or the head if there is none.
+     */
+    private int lastInNeighbor(int node) {
+        int last = head;
+        for(int i = inOffsets[node]; i < inOffsets[node + 1]; i++) {
+            int in = inTargets[i];
+            if(ordered[in] && labels[in] > labels[last]) last = in;
+        }
+        return last;
+    }
+
+    /**
+     * @return The ordered out neighbor with the lowest label, or the head (as end of the list) if there is none.
+     */
+    private int firstOutNeighbor(int node) {
+        int first = head;
+        for(int i = outOffsets[node]; i < outOffsets[node + 1]; i++) {
+            int out = outTargets[i];
+            if(ordered[out] && (first == head || labels[out] < labels[first])) first = out;
+        }
+        return first;
+    }
+
+    /**
+     * Links the node into the order before the successor (the head means at the end).
+     */
+    private void linkBefore(int node, int successor) {
+        int predecessor = prev[successor];
+        if(predecessor != head && successor != head && labels[successor] - labels[predecessor] < 2) relabel();
+        labels[node] = labelBetween(predecessor, successor);
+        prev[node] = predecessor;
+        next[node] = successor;
+        next[predecessor] = node;
+        prev[successor] = node;
+        ordered[node] = true;
+    }
+
+    /**
+     * @return The label in the middle between the two nodes, the head counts as one gap before the first or after the last node.
+     */
+    private long labelBetween(int predecessor, int successor) {
+        if(predecessor == head && successor == head) return 0;
+        if(predecessor == head) return labels[successor] - GAP;
+        if(successor == head) return labels[predecessor] + GAP;
+        return labels[predecessor] + (labels[successor] - labels[predecessor]) / 2;
+    }
+
+    private void unlink(int node) {
+        next[prev[node]] = next[node];
+        prev[next[node]] = prev[node];
+        ordered[node] = false;
+        solutionIndex[node] = solutionSize;
+        solution[solutionSize++] = node;
+    }
+
+    private void removeFromSolution(int node) {
+        int last = solution[--solutionSize];
+        solution[solutionIndex[node]] = last;
+        solutionIndex[last] = solutionIndex[node];
+    }
+
+    /**
+     * Spreads the labels evenly, when there is no gap left between two neighbors.
+     */
+    private void relabel() {
+        long label = 0;
+        for(int node = next[head]; node != head; node = next[node]) {
+            labels[node] = label;
+            label += GAP;
+        }
+    }
+
+    private List<Integer> getSolution() {
+        List<Integer> S = new ArrayList<>(solutionSize);
+        for(int i = 0; i < solutionSize; i++) S.add(solution[i]);
+        return S;
+    }
+}
@@ -3,198 +3,774 @@ package program.algo;
 import program.log.CycleCounter;
 import program.model.*;
 import program.utils.PerformanceTimer;
+import program.utils.Timer;
 import program.utils.TimeoutException;
 import program.log.Log;
-import program.utils.Timer;
 
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 public abstract class Solver {
 
-    public static Instance instance;
 
-    private static List<Integer> dfvsBranch(Graph graph, int k, int level, PackingManager pm) throws TimeoutException {
+    /**
+     * State of the search on one cyclic sub graph. The sub graphs are independent and can be solved at the same time.
+     */
+    private static class Search {
+
+        private final SolverContext context;
+        private final Graph graph;
+
+        // Current k of the iteration and the cycle counter of it
+        private volatile int k = 0;
+        private CycleCounter cycleCounter = new CycleCounter(0);
+        private CycleCounter failedCycleCounter = new CycleCounter(0);
+
+        // Set when a parallel branch found a solution for the current k
+        private volatile boolean solutionFound = false;
+
+        // Largest k for which a sub problem failed, by the hash of its graph. Kept over all iterations, so the
+        // iterations with smaller k are pruned where the earlier ones failed
+        private TranspositionTable failures;
+
+        // Results
+        private final int[] initialNodes;
+        private volatile boolean started = false;
+        private List<Integer> reduceS = new ArrayList<>();
+        private int reducedNodeCount;
+        private int removedFlowers; // By the flower rule, for the best solution
+
+        // Petals of the flower rule & shortest cycles, updated with the graph. Only used by the sequential branching
+        private Flowers flowers;
+        private CycleIndex cycleIndex;
+
+        // Fractional DFVS of the root graph, the nodes of every branching cycle are tried from the highest value on.
+        // Only set with the fractional bound, else null
+        private double[] nodeValues;
+
+        private volatile List<Integer> incumbent; // Best known solution (without reduceS)
+        private volatile List<Integer> S;
+
+        private Search(SolverContext context, Graph graph) {
+            this.context = context;
+            this.graph = graph;
+            this.initialNodes = graph.getNodeIds();
+            this.reducedNodeCount = graph.getNodeCount();
+        }
+
+        /**
+         * @return The optimal solution, else the incumbent. If there is none yet, all nodes of the sub graph.
+         */
+        private List<Integer> getBestSolution() {
+            if (S != null) return S;
+            if (incumbent != null) return incumbent;
+            List<Integer> allNodes = new ArrayList<>();
+            for (int node : initialNodes) allNodes.add(node);
+            return allNodes;
+        }
+
+        private boolean isReduced() {
+            return S != null || incumbent != null;
+        }
+    }
+
+    private static List<Integer> dfvsBranch(Search search, Graph graph, int k, int level, PackingManager pm) throws TimeoutException {
+        return dfvsBranch(search, graph, k, level, pm, true);
+    }
+
+    /**
+     * @param split False skips the decomposition. A step whose reductions put no nodes into the solution rarely splits
+     *              the graph, so the Tarjan run over the whole graph isn't worth it there.
+     */
+    private static List<Integer> dfvsBranch(Search search, Graph graph, int k, int level, PackingManager pm, boolean split) throws TimeoutException {
+
+        SolverContext context = search.context;
+        PerformanceTimer timer = context.performanceTimer;
+        Flowers flowers = (context.pool == null) ? search.flowers : null;
+        CycleIndex cycleIndex = (context.pool == null) ? search.cycleIndex : null;
 
         // Log recursive steps
-        instance.recursiveSteps++;
+        context.recursiveSteps.increment();
 
         // Check Timer
-        if (Timer.isTimeout()) throw new TimeoutException("The program stopped after " + Timer.timeout + " seconds.");
+        if (context.timer.isTimeout()) throw new TimeoutException("The program stopped after " + context.timer.getTimeout() + " seconds.");
+
+        // Another parallel branch already found a solution
+        if (search.solutionFound) return null;
+
+        // Same sub problem already failed for this k, reached by another branch or in an earlier iteration
+        if (isKnownFailure(search, graph, k)) return null;
 
         // Break to skip the redundant dfvs_branch()-call when k = 0
         if (k <= 0) {
             // Return if graph has no circles
-            PerformanceTimer.start();
+            timer.start();
             boolean isDAG = DAG.isDAG(graph);
-            PerformanceTimer.log(PerformanceTimer.MethodType.DAG);
+            timer.log(PerformanceTimer.MethodType.DAG);
             if (isDAG) {
                 return new ArrayList<>();
             }
             else return null;
         }
 
+        // The deletions may have split the graph, then every strongly connected component is solved on its own
+        if (level >= context.decompositionLevel && split) {
+            timer.start();
+            List<int[]> components = Tarjan.run(graph);
+            timer.log(PerformanceTimer.MethodType.DECOMPOSITION);
+            // Without a component of more than one node, the reductions left an acyclic graph
+            boolean cyclic = false;
+            for (int[] component : components) cyclic |= component.length > 1;
+            if (!cyclic) return new ArrayList<>();
+            if (components.size() > 1) return solveComponents(search, graph, k, level, components);
+        }
+
+        // Only 2-cycles left, then the DFVS is a vertex cover
+        if (graph.isBidirected()) return solveVertexCover(search, graph, k);
+
         // Next Cycle
-        PerformanceTimer.start();
-        Cycle cycle = FullBFS.findShortestCycle(graph);
-        PerformanceTimer.log(PerformanceTimer.MethodType.BFS);
+        timer.start();
+        Cycle cycle = (cycleIndex != null) ? cycleIndex.findShortestCycle(graph) : FullBFS.findShortestCycle(graph);
+        if (search.nodeValues != null) cycle.sortDescending(search.nodeValues);
+        timer.log(PerformanceTimer.MethodType.BFS);
 
         // Log cycle
-        CycleCounter.count(cycle, level);
+        search.cycleCounter.count(cycle, level);
 
         List<Integer> forbiddenIds = new ArrayList<>();
-        for (Node node: cycle.getNodes()) {
-            // Create a copy of the graph and remove deleted & forbidden nodes
-            PerformanceTimer.start();
-            Graph copy = graph.copy();
-            copy.removeNode(node.id);
-            copy.removeForbiddenNodes(forbiddenIds);
-            PerformanceTimer.log(PerformanceTimer.MethodType.COPY);
+        for (int node: cycle.getNodes()) {
+            // Remove deleted & forbidden nodes, all changes are recorded on the trail of the graph
+            timer.start();
+            int mark = graph.mark();
+            graph.removeNode(node);
+            graph.removeForbiddenNodes(forbiddenIds);
+            timer.log(PerformanceTimer.MethodType.TRAIL);
 
             // Apply reduction rules
-            PerformanceTimer.start();
-            List<Integer> reduceS = Reduction.applyRules(copy, false);
-            PerformanceTimer.log(PerformanceTimer.MethodType.REDUCTION);
+            timer.start();
+            List<Integer> reduceS = Reduction.applyRules(graph, false, timer);
+            timer.log(PerformanceTimer.MethodType.REDUCTION);
 
-            // Calculate next k, skip if < 0
+            // Calculate next k, then the flower rule with the updated petals
             int nextK = k - 1 - reduceS.size();
-            if(nextK < 0) continue;
-
-            // Add all new deleted nodes to list
-            List<Integer> deleteIds = new ArrayList<>(reduceS);
-            deleteIds.add(node.id);
-            // Update packing manager
-            PerformanceTimer.start();
-            PackingManager newPm = new PackingManager(pm, deleteIds, forbiddenIds);
-            //System.out.println(" . ".repeat(level) + "(" + node + ") PM packing size = " + newPm.size());
-            //System.out.println("Packing time: " + (System.nanoTime() - PerformanceTimer.startTime) / 1000000);
-            PerformanceTimer.log(PerformanceTimer.MethodType.PACKING);
-
-
-            // When packing is larger than next k, skip & try upgrade packing
-            if(newPm.size() > nextK) {
-                PerformanceTimer.start();
-                newPm.addDeletedNodes(deleteIds);
-                newPm.removeForbiddenNodes(forbiddenIds);
-                newPm.initPacking();
-                PerformanceTimer.log(PerformanceTimer.MethodType.PACKING);
-                if(newPm.size() > pm.size()) pm = newPm;
-                // If updated packing is > k, immediately return
-                if(pm.size() > k) return null;
-                else continue;
+            int flowerMark = updateFlowers(timer, graph, mark, flowers);
+            if(nextK >= 0 && flowers != null && level < context.flowerLevel) {
+                timer.start();
+                List<Integer> flowerS = flowers.applyRule(graph, nextK);
+                timer.log(PerformanceTimer.MethodType.FLOWERS);
+                timer.logHits(PerformanceTimer.MethodType.FLOWERS, flowerS.size());
+                reduceS.addAll(flowerS);
+                nextK -= flowerS.size();
+            }
+
+            int cycleMark = updateCycles(timer, graph, mark, cycleIndex);
+
+            // Skip if < 0
+            if(nextK < 0) {
+                backtrack(timer, graph, mark, flowers, flowerMark, cycleIndex, cycleMark);
+                continue;
+            }
+
+            // Update the packing for the changes of the graph, skip if it is larger than next k
+            int packingMark = pm.mark();
+            updatePacking(search, graph, mark, pm, nextK);
+            if(pm.size() > nextK) {
+                backtrack(timer, graph, mark, flowers, flowerMark, cycleIndex, cycleMark);
+                pm.backtrack(packingMark);
+                continue;
             }
 
-            // Recursive call
-            List<Integer> S = dfvsBranch(copy, nextK, level + 1, newPm);
+            // Recursive call, afterwards the graph and the packing are restored for the next sibling
+            List<Integer> S = dfvsBranch(search, graph, nextK, level + 1, pm, !reduceS.isEmpty());
+            backtrack(timer, graph, mark, flowers, flowerMark, cycleIndex, cycleMark);
+            pm.backtrack(packingMark);
             if (S != null) {
-                S.add(node.id);
+                S.add(node);
                 S.addAll(reduceS);
                 return S;
             }
 
-            // Try upgrade packing
-            PerformanceTimer.start();
-            newPm.addDeletedNodes(deleteIds);
-            newPm.removeForbiddenNodes(forbiddenIds);
-            newPm.initPacking();
-            PerformanceTimer.log(PerformanceTimer.MethodType.PACKING);
-            if(newPm.size() > pm.size()) pm = newPm;
-
             // Add new node to forbidden nodes
-            forbiddenIds.add(node.id);
+            forbiddenIds.add(node);
+        }
+        return fail(search, graph, k);
+    }
+
+    /**
+     * Solves the cyclic components one by one, the arcs between them are dropped by removing all other nodes.
+     * The budget of a component is k minus the solutions of the components before and the lower bounds of the ones
+     * after it. All but the last component need their minimal solution, so their k is raised from the lower bound.
+     * @param components The strongly connected components of the graph.
+     * @return The union of the solutions, or null if they need more than k nodes.
+     */
+    private static List<Integer> solveComponents(Search search, Graph graph, int k, int level, List<int[]> components) {
+
+        PerformanceTimer timer = search.context.performanceTimer;
+        Flowers flowers = (search.context.pool == null) ? search.flowers : null;
+        CycleIndex cycleIndex = (search.context.pool == null) ? search.cycleIndex : null;
+
+        // Acyclic nodes are on no cycle, so they are dropped
+        List<int[]> cyclicComponents = new ArrayList<>();
+        for (int[] component : components) {
+            if (component.length > 1) cyclicComponents.add(component);
+        }
+        cyclicComponents.sort(Comparator.comparingInt(component -> component.length));
+
+        // Lower bound per component
+        int mark = graph.mark();
+        int[] lowerBounds = new int[cyclicComponents.size()];
+        PackingManager[] pms = new PackingManager[cyclicComponents.size()];
+        int lowerBound = 0;
+        for (int i = 0; i < cyclicComponents.size(); i++) {
+            isolate(timer, graph, cyclicComponents.get(i));
+            timer.start();
+            pms[i] = new PackingManager(graph);
+            timer.log(PerformanceTimer.MethodType.PACKING);
+            backtrack(timer, graph, mark);
+            lowerBounds[i] = pms[i].size();
+            lowerBound += lowerBounds[i];
+        }
+        if (lowerBound > k) return fail(search, graph, k);
+
+        List<Integer> S = new ArrayList<>();
+        for (int i = 0; i < cyclicComponents.size(); i++) {
+            lowerBound -= lowerBounds[i];
+            int maxK = k - S.size() - lowerBound;
+
+            isolate(timer, graph, cyclicComponents.get(i));
+            int componentMark = graph.mark();
+            timer.start();
+            List<Integer> reduceS = Reduction.applyRules(graph, false, timer);
+            timer.log(PerformanceTimer.MethodType.REDUCTION);
+            int flowerMark = updateFlowers(timer, graph, mark, flowers);
+            int cycleMark = updateCycles(timer, graph, mark, cycleIndex);
+            updatePacking(search, graph, componentMark, pms[i], Integer.MAX_VALUE);
+
+            List<Integer> componentS = null;
+            boolean last = i == cyclicComponents.size() - 1;
+            // The component is strongly connected, only its reductions could split it again
+            for (int componentK = last ? maxK : lowerBounds[i]; componentK <= maxK && componentS == null; componentK++) {
+                if (componentK - reduceS.size() < 0) continue;
+                componentS = dfvsBranch(search, graph, componentK - reduceS.size(), level, pms[i], !reduceS.isEmpty());
+            }
+            backtrack(timer, graph, mark, flowers, flowerMark, cycleIndex, cycleMark);
+
+            if (componentS == null) return fail(search, graph, k);
+            S.addAll(componentS);
+            S.addAll(reduceS);
+        }
+        return S;
+    }
+
+    /**
+     * Removes all nodes which are not in the component, the changes are recorded on the trail.
+     */
+    private static void isolate(PerformanceTimer timer, Graph graph, int[] component) {
+        timer.start();
+        boolean[] inComponent = new boolean[graph.getCapacity()];
+        for (int node : component) inComponent[node] = true;
+        for (int node = graph.nextNode(0); node != -1; node = graph.nextNode(node + 1)) {
+            if (!inComponent[node]) graph.removeNode(node);
         }
+        timer.log(PerformanceTimer.MethodType.DECOMPOSITION);
+    }
+
+    /**
+     * Solves a graph where every arc is bidirected with the vertex cover solver.
+     * @return The solution with at most k nodes, or null if there is none.
+     */
+    private static List<Integer> solveVertexCover(Search search, Graph graph, int k) {
+        PerformanceTimer timer = search.context.performanceTimer;
+        timer.start();
+        List<Integer> S = VertexCover.solve(search.context, graph, k);
+        timer.log(PerformanceTimer.MethodType.VERTEX_COVER);
+        return S != null ? S : fail(search, graph, k);
+    }
+
+    private static boolean isKnownFailure(Search search, Graph graph, int k) {
+        if (search.failures == null) return false;
+        boolean failure = search.failures.isFailure(graph.getHash(), k);
+        search.context.performanceTimer.logLookup(failure);
+        return failure;
+    }
+
+    /**
+     * Keeps the fact that the sub problem needs more than k nodes. Branches which stopped because another branch
+     * found a solution proved nothing, so nothing is kept then.
+     * @return Null, for the failed branch.
+     */
+    private static List<Integer> fail(Search search, Graph graph, int k) {
+        if (search.failures != null && !search.solutionFound) search.failures.putFailure(graph.getHash(), k);
         return null;
     }
 
-    private static int k;
+    /**
+     * Parallel version of dfvsBranch() for the upper levels of the search tree. Every node of the cycle becomes a task
+     * with its own copy of the graph, the nodes before it in the cycle are forbidden. The tasks are forked into the pool,
+     * so idle threads steal them. When one task finds a solution, the remaining tasks stop.
+     * From the sequential cutoff on, the tasks continue with the sequential dfvsBranch() on their copy.
+     */
+    private static List<Integer> dfvsBranchParallel(Search search, Graph graph, int k, int level, PackingManager pm) throws TimeoutException {
+
+        SolverContext context = search.context;
+        PerformanceTimer timer = context.performanceTimer;
+
+        // The sequential search below the cutoff, its solution stops all other tasks
+        if (level >= context.sequentialCutoff) {
+            List<Integer> S = dfvsBranch(search, graph, k, level, pm);
+            if (S != null) search.solutionFound = true;
+            return S;
+        }
+
+        // Log recursive steps
+        context.recursiveSteps.increment();
+
+        // Check Timer
+        if (context.timer.isTimeout()) throw new TimeoutException("The program stopped after " + context.timer.getTimeout() + " seconds.");
 
-    public static List<Integer> dfvsSolve(Graph initialGraph) {
+        if (search.solutionFound) return null;
+
+        if (isKnownFailure(search, graph, k)) return null;
+
+        if (k <= 0) {
+            timer.start();
+            boolean isDAG = DAG.isDAG(graph);
+            timer.log(PerformanceTimer.MethodType.DAG);
+            return isDAG ? new ArrayList<>() : null;
+        }
+
+        if (graph.isBidirected()) return solveVertexCover(search, graph, k);
+
+        // Next Cycle
+        timer.start();
+        Cycle cycle = FullBFS.findShortestCycle(graph);
+        if (search.nodeValues != null) cycle.sortDescending(search.nodeValues);
+        timer.log(PerformanceTimer.MethodType.BFS);
+
+        // Log cycle
+        search.cycleCounter.count(cycle, level);
+
+        // Fork one task per node of the cycle
+        int[] nodes = cycle.getNodes();
+        List<BranchTask> tasks = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            List<Integer> forbiddenIds = new ArrayList<>();
+            for (int j = 0; j < i; j++) forbiddenIds.add(nodes[j]);
+            BranchTask task = new BranchTask(search, graph, k, level, pm, nodes[i], forbiddenIds);
+            task.fork();
+            tasks.add(task);
+        }
 
-        PerformanceTimer.start();
+        // The task which finds a solution sets the flag, so the others stop. Every solution is valid, the forbidden
+        // nodes only break the symmetry, so the first one returned wins. A running task may hold the solution which
+        // set the flag, so only the tasks which haven't started are taken back, all others are joined.
+        // No task may outlive the iteration of its k: the next one resets the flag, so a late failure would be kept.
+        // So a timeout is thrown only after all tasks are done
+        List<Integer> S = null;
+        Throwable exception = null;
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            BranchTask task = tasks.get(i);
+            if (search.solutionFound && task.tryUnfork()) continue;
+            task.quietlyJoin();
+            if (task.isCompletedAbnormally()) exception = task.getException();
+            else if (S == null) S = task.getRawResult();
+        }
+        if (exception instanceof RuntimeException) throw (RuntimeException) exception;
+        if (exception instanceof Error) throw (Error) exception;
+        return (S != null) ? S : fail(search, graph, k);
+    }
+
+    private static class BranchTask extends RecursiveTask<List<Integer>> {
+
+        private final Search search;
+        private final Graph graph;
+        private final int k;
+        private final int level;
+        private final PackingManager pm;
+        private final int node;
+        private final List<Integer> forbiddenIds;
+
+        private BranchTask(Search search, Graph graph, int k, int level, PackingManager pm, int node, List<Integer> forbiddenIds) {
+            this.search = search;
+            this.graph = graph;
+            this.k = k;
+            this.level = level;
+            this.pm = pm;
+            this.node = node;
+            this.forbiddenIds = forbiddenIds;
+        }
+
+        @Override
+        protected List<Integer> compute() {
+            if (search.solutionFound) return null;
+            PerformanceTimer timer = search.context.performanceTimer;
+
+            // Own copy of the graph, the parent graph is shared by all siblings
+            timer.start();
+            Graph copy = graph.copy();
+            copy.setReversible();
+            copy.removeNode(node);
+            copy.removeForbiddenNodes(forbiddenIds);
+            timer.log(PerformanceTimer.MethodType.TRAIL);
+
+            // Apply reduction rules
+            timer.start();
+            List<Integer> reduceS = Reduction.applyRules(copy, false, timer);
+            timer.log(PerformanceTimer.MethodType.REDUCTION);
+
+            // Calculate next k, skip if < 0
+            int nextK = k - 1 - reduceS.size();
+            if (nextK < 0) return null;
+
+            // Own copy of the packing, updated for all changes of the copied graph, skip if it is larger than next k
+            timer.start();
+            PackingManager newPm = pm.copy();
+            timer.log(PerformanceTimer.MethodType.PACKING);
+            updatePacking(search, copy, 0, newPm, nextK);
+            if (newPm.size() > nextK) return null;
+
+            List<Integer> S = dfvsBranchParallel(search, copy, nextK, level + 1, newPm);
+            if (S != null) {
+                S.add(node);
+                S.addAll(reduceS);
+                search.solutionFound = true;
+            }
+            return S;
+        }
+    }
+
+    /**
+     * Undoes all changes on the graph since the mark.
+     */
+    private static void backtrack(PerformanceTimer timer, Graph graph, int mark) {
+        timer.start();
+        graph.backtrack(mark);
+        timer.log(PerformanceTimer.MethodType.TRAIL);
+    }
+
+    /**
+     * Undoes all changes on the graph and the petals since the marks.
+     * @param flowers The petals, may be null.
+     */
+    private static void backtrack(PerformanceTimer timer, Graph graph, int mark, Flowers flowers, int flowerMark) {
+        backtrack(timer, graph, mark);
+        if (flowers != null) flowers.backtrack(flowerMark);
+    }
+
+    /**
+     * Undoes all changes on the graph, the petals and the cycle index since the marks.
+     * @param cycleIndex The cycle index, may be null.
+     */
+    private static void backtrack(PerformanceTimer timer, Graph graph, int mark, Flowers flowers, int flowerMark, CycleIndex cycleIndex, int cycleMark) {
+        backtrack(timer, graph, mark, flowers, flowerMark);
+        if (cycleIndex != null) cycleIndex.backtrack(cycleMark);
+    }
+
+    /**
+     * Updates the petals for the nodes removed since the mark.
+     * @param flowers The petals, may be null.
+     * @return The mark of the petals before the update.
+     */
+    private static int updateFlowers(PerformanceTimer timer, Graph graph, int mark, Flowers flowers) {
+        if (flowers == null) return 0;
+        timer.start();
+        int flowerMark = flowers.mark();
+        flowers.removeNodes(graph.getRemovedNodes(mark));
+        timer.log(PerformanceTimer.MethodType.FLOWERS);
+        return flowerMark;
+    }
+
+    /**
+     * Updates the cycle index for the changes of the graph since the mark.
+     * @param cycleIndex The cycle index, may be null.
+     * @return The mark of the cycle index before the update.
+     */
+    private static int updateCycles(PerformanceTimer timer, Graph graph, int mark, CycleIndex cycleIndex) {
+        if (cycleIndex == null) return 0;
+        timer.start();
+        int cycleMark = cycleIndex.mark();
+        cycleIndex.update(graph, mark);
+        timer.log(PerformanceTimer.MethodType.BFS);
+        return cycleMark;
+    }
+
+    /**
+     * Updates the packing for the changes of the graph since the mark. If it is exactly k, the local search tries to
+     * lift it above k within the step budget, so the step can be pruned.
+     */
+    private static void updatePacking(Search search, Graph graph, int mark, PackingManager pm, int k) {
+        PerformanceTimer timer = search.context.performanceTimer;
+        timer.start();
+        pm.update(graph, mark);
+        if (pm.size() == k) {
+            long deadline = System.nanoTime() + search.context.stepPackingMicros * 1000;
+            timer.logHits(PerformanceTimer.MethodType.PACKING, pm.improve(graph, k, deadline) ? 1 : 0);
+        }
+        timer.log(PerformanceTimer.MethodType.PACKING);
+    }
+
+    public static List<Integer> dfvsSolve(SolverContext context, Graph initialGraph) {
+        Search search = new Search(context, initialGraph);
+        dfvsSolve(search);
+        return search.S;
+    }
+
+    private static void dfvsSolve(Search search) {
+
+        SolverContext context = search.context;
+        Instance instance = context.instance;
+        PerformanceTimer timer = context.performanceTimer;
+
+        // The whole search works on this graph and undoes its changes on the way back
+        Graph initialGraph = search.graph;
+
+        // Heuristic upper bound as incumbent, so there is always a solution on timeout
+        timer.start();
+        search.incumbent = Heuristic.upperBound(initialGraph);
+        Log.debugLog(instance.NAME, "Heuristic: Incumbent has the size " + search.incumbent.size());
+        timer.log(PerformanceTimer.MethodType.HEURISTIC);
+
+        initialGraph.setReversible();
+
+        timer.start();
         PackingManager pm = new PackingManager(initialGraph);
-        Log.debugLog(instance.NAME, "PM: Initial cycle packing has the size " + pm.size());
-        PerformanceTimer.log(PerformanceTimer.MethodType.PACKING);
+        int greedySize = pm.size();
+        pm.improve(initialGraph, search.incumbent.size() - 1, System.nanoTime() + context.rootPackingMillis * 1000000);
+        Log.debugLog(instance.NAME, "PM: Initial cycle packing has the size " + pm.size() + " (greedy " + greedySize + ")");
+        timer.log(PerformanceTimer.MethodType.PACKING);
+
+        // Every iteration either raises the lower bound or improves the incumbent, until they meet
+        int lowerBound = pm.size();
+        if (context.fractionalBound && lowerBound < search.incumbent.size()) {
+            timer.start();
+            FractionalPacking fractionalPacking = new FractionalPacking(initialGraph, context.pool, System.nanoTime() + context.fractionalBoundMillis * 1000000);
+            lowerBound = Math.max(lowerBound, fractionalPacking.getLowerBound());
+            search.nodeValues = fractionalPacking.getNodeValues();
+            Log.debugLog(instance.NAME, "Fractional cycle packing: Lower bound " + fractionalPacking.getLowerBound());
+            timer.log(PerformanceTimer.MethodType.PACKING);
+        }
+        if (lowerBound < search.incumbent.size()) {
+            search.failures = new TranspositionTable(context.transpositionTableSize);
+            // Petals don't depend on k, the flower rule uses them in every iteration (all k are in these bounds)
+            timer.start();
+            search.flowers = new Flowers(initialGraph, lowerBound, search.incumbent.size() - 1, context.pool);
+            timer.log(PerformanceTimer.MethodType.FLOWERS);
+            if (context.pool == null) search.cycleIndex = new CycleIndex(initialGraph);
+        }
+        int step = 1;
+        SolverContext.Strategy strategy = context.strategy;
+        while (lowerBound < search.incumbent.size()) {
+            int upperBound = search.incumbent.size() - 1;
+            int k;
+            switch (strategy) {
+                case ASCENDING:
+                    k = lowerBound;
+                    break;
+                case BINARY:
+                    k = (lowerBound + upperBound) / 2;
+                    break;
+                case GALLOPING:
+                    k = Math.min(lowerBound + step - 1, upperBound);
+                    break;
+                default:
+                    k = upperBound;
+            }
+            search.k = k;
+            search.cycleCounter = new CycleCounter(k);
+            Log.debugLog(instance.NAME, "Branching with k = " + k + " in [" + lowerBound + ", " + upperBound + "] (+ " + instance.S.size() + ")...");
+            // All tasks of the last iteration are joined, none of them can see the reset flag
+            search.solutionFound = false;
+            List<Integer> S = branchWithFlowers(search, initialGraph, k, pm);
+            if (S == null) {
+                // Keep the cycle counter of the last failed k for the detail logs
+                search.failedCycleCounter = search.cycleCounter;
+                lowerBound = k + 1;
+                step *= 2;
+            } else {
+                search.incumbent = S;
+                Log.debugLog(instance.NAME, "Branching: Improved incumbent to the size " + S.size());
+                // Galloping found the range, continue with the binary search in it
+                if (strategy == SolverContext.Strategy.GALLOPING) strategy = SolverContext.Strategy.BINARY;
+            }
+        }
+        // No smaller solution exists, so the incumbent is optimal
+        search.S = search.incumbent;
+    }
+
+    /**
+     * Removes the nodes with a petal > k, they are in every solution with at most k nodes, and branches on the rest.
+     * The graph is restored afterwards.
+     * @return The solution with at most k nodes, or null if there is none.
+     */
+    private static List<Integer> branchWithFlowers(Search search, Graph graph, int k, PackingManager pm) {
+        SolverContext context = search.context;
+        PerformanceTimer timer = context.performanceTimer;
+
+        timer.start();
+        int mark = graph.mark();
+        int flowerMark = search.flowers.mark();
+        List<Integer> flowers = search.flowers.applyRule(graph, k);
+        timer.log(PerformanceTimer.MethodType.FLOWERS);
+        timer.logHits(PerformanceTimer.MethodType.FLOWERS, flowers.size());
+        int flowerK = k - flowers.size();
+        int cycleMark = updateCycles(timer, graph, mark, search.cycleIndex);
+        int packingMark = pm.mark();
+        updatePacking(search, graph, mark, pm, flowerK);
 
-        k = 0;
         List<Integer> S = null;
-        while (S == null) {
-            if(k >= pm.size()) {
-                CycleCounter.init(k);
-                Log.debugLog(instance.NAME, "Branching with k = " + k + " (+ " + instance.S.size() + ")...");
-                S = dfvsBranch(initialGraph, k, 0, pm);
-                if (S == null) {
-                    // Log detail logs
-                    instance.averageCycleSize = CycleCounter.getAverageCycleSize();
-                    instance.recursiveStepsPerK = CycleCounter.getRecursiveSteps();
+        if (flowerK >= 0 && pm.size() <= flowerK) {
+            RecursiveTask<List<Integer>> root = new RecursiveTask<>() {
+                @Override
+                protected List<Integer> compute() {
+                    return dfvsBranchParallel(search, graph, flowerK, 0, pm);
                 }
-            }
-            k++;
+            };
+            if (context.pool == null) S = dfvsBranch(search, graph, flowerK, 0, pm);
+            else if (ForkJoinTask.inForkJoinPool()) S = root.invoke();
+            else S = context.pool.invoke(root);
+        }
+        backtrack(timer, graph, mark, search.flowers, flowerMark, search.cycleIndex, cycleMark);
+        pm.backtrack(packingMark);
+        if (S != null) {
+            S.addAll(flowers);
+            search.removedFlowers = flowers.size();
         }
         return S;
     }
 
+    /**
+     * Reduces and solves one cyclic sub graph.
+     */
+    private static void solveSubGraph(Search search) {
+        search.started = true;
+        PerformanceTimer timer = search.context.performanceTimer;
+        timer.start();
+        search.reduceS = Reduction.applyRules(search.graph, true, timer);
+        search.reducedNodeCount = search.graph.getNodeCount();
+        timer.log(PerformanceTimer.MethodType.PREPROCESSING);
+        dfvsSolve(search);
+    }
+
     public static void dfvsSolveInstance(Instance instance) {
+        dfvsSolveInstance(new SolverContext(instance));
+    }
 
-        //Set instance & branch count
-        Solver.instance = instance;
+    public static void dfvsSolveInstance(SolverContext context) {
 
-        // Start Timer
-        Timer.start();
+        Instance instance = context.instance;
+        PerformanceTimer timer = context.performanceTimer;
 
-        Graph initialGraph = instance.subGraphs.get(0);
+        // Start Timer
+        context.timer.start();
 
-        PerformanceTimer.reset();
-        PerformanceTimer.start();
+        timer.start();
 
-        // Preprocessing
+        // Preprocessing & sub graphs, skipped for instances from the cache
         Log.debugLog(instance.NAME, "---------- " + instance.NAME + " (n = " + instance.N + ", m = " + instance.M + ", k = " + instance.OPTIMAL_K + ") ----------");
-        List<Integer> reduceS = Reduction.applyRules(initialGraph, true);
-        instance.S.addAll(reduceS);
-
-        // Create sub graphs
-        instance.subGraphs = Preprocessing.findCyclicSubGraphs(initialGraph);
+        Preprocessing.preprocess(instance);
+        instance.S.addAll(instance.preprocessedS);
         Log.debugLog(instance.NAME, "Found " + instance.subGraphs.size() + " cyclic sub graph(s) with n = " + instance.subGraphs.stream().map(Graph::getNodeCount).collect(Collectors.toList()));
+        timer.log(PerformanceTimer.MethodType.PREPROCESSING);
 
-        // Apply rules on each sub graph
-        for(Graph subGraph: instance.subGraphs) {
-            List<Integer> reduceSubS = Reduction.applyRules(subGraph, true);
-            instance.S.addAll(reduceSubS);
-        }
-        PerformanceTimer.log(PerformanceTimer.MethodType.PREPROCESSING);
-
-        instance.preRemovedNodes = instance.N - instance.subGraphs.stream().mapToInt(Graph::getNodeCount).sum();
-        instance.startK = instance.S.size();
-        Log.debugLog(instance.NAME, "Removed " + instance.preRemovedNodes + " nodes in preprocessing, starting with k = " + instance.startK);
+        List<Search> searches = new ArrayList<>();
+        for (Graph subGraph : instance.subGraphs) searches.add(new Search(context, subGraph));
 
-        // Run for all sub graphs
+        // Reduce & solve all sub graphs, in parallel mode as independent tasks in the pool
+        if (context.parallelism > 1) context.pool = (context.sharedPool != null) ? context.sharedPool : new ForkJoinPool(context.parallelism);
         try {
-            for (Graph subGraph : instance.subGraphs) {
-                List<Integer> S = dfvsSolve(subGraph);
-                instance.S.addAll(S);
+            if (context.pool == null) {
+                for (Search search : searches) solveSubGraph(search);
+            } else {
+                // Submit the largest sub graph first, so the slowest one doesn't start last
+                List<Search> order = new ArrayList<>(searches);
+                order.sort(Comparator.comparingInt((Search search) -> search.graph.getNodeCount()).reversed());
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (Search search : order) tasks.add(context.pool.submit(() -> solveSubGraph(search)));
+                // Wait for all tasks, so no sub graph is still changed while the results are merged
+                for (ForkJoinTask<?> task : tasks) task.quietlyJoin();
+                for (ForkJoinTask<?> task : tasks) task.join();
             }
         } catch (TimeoutException timeoutException) {
-            Long time = Timer.stop();
-            // Add the current k to the solution size for better logging
-            instance.solvedK = instance.S.size() + k;
-            PerformanceTimer.printResult();
-            Log.mainLog(instance, time, PerformanceTimer.getPackingMillis(), false);
+            Long time = context.timer.stop();
+            // Anytime result: the best known solution of every sub graph, the ones not started yet get the heuristic
+            for (Search search : searches) {
+                if (!search.started) search.incumbent = Heuristic.upperBound(search.graph);
+                addBestSolution(instance, search);
+            }
+            setMetrics(context, searches);
+            instance.solvedK = instance.S.size();
+            timer.printResult(instance.NAME);
+            Log.mainLog(instance, time, timer.getPackingMillis(), false);
             Log.detailLog(instance);
-            Log.debugLog(instance.NAME, "Found no solution in " + Timer.format(time) + " (recursive steps: " + instance.recursiveSteps + ")", true);
+            Log.debugLog(instance.NAME, "Found no optimal solution in " + Timer.format(time) + ", best known solution has k = " + instance.S.size() + " (recursive steps: " + instance.recursiveSteps + ")", true);
             return;
+        } finally {
+            if (context.pool != null && context.pool != context.sharedPool) context.pool.shutdownNow();
+            context.pool = null;
         }
 
         // Stop Timer
-        Long time = Timer.stop();
+        Long time = context.timer.stop();
+
+        // Merge the results of the sub graphs
+        for (Search search : searches) addBestSolution(instance, search);
+        setMetrics(context, searches);
 
         // Verify
         instance.solvedK = instance.S.size();
         boolean verified = instance.solvedK == instance.OPTIMAL_K || instance.OPTIMAL_K == -1;
 
         // Log
-        PerformanceTimer.printResult();
-        Log.mainLog(instance, time, PerformanceTimer.getPackingMillis(), verified);
+        timer.printResult(instance.NAME);
+        Log.mainLog(instance, time, timer.getPackingMillis(), verified);
         Log.detailLog(instance);
         Log.debugLog(instance.NAME, "Found solution with k = " + instance.S.size() + " in " + Timer.format(time) + " (recursive steps: " + instance.recursiveSteps + ")", !verified);
     }
+
+    /**
+     * Aggregates the log variables of all sub graphs into the instance.
+     */
+    private static void setMetrics(SolverContext context, List<Search> searches) {
+        Instance instance = context.instance;
+        int startK = instance.S.size();
+        int remainingNodes = 0;
+        int removedFlowers = 0;
+        List<CycleCounter> cycleCounters = new ArrayList<>();
+        for (Search search : searches) {
+            startK -= search.getBestSolution().size();
+            remainingNodes += search.reducedNodeCount;
+            removedFlowers += search.removedFlowers;
+            cycleCounters.add(search.failedCycleCounter);
+        }
+        instance.startK = startK;
+        instance.preRemovedNodes = instance.N - remainingNodes;
+        instance.removedFlowers = removedFlowers;
+        instance.recursiveSteps = context.recursiveSteps.intValue();
+        CycleCounter cycleCounter = CycleCounter.merge(cycleCounters);
+        instance.averageCycleSize = cycleCounter.getAverageCycleSize();
+        instance.recursiveStepsPerK = cycleCounter.getRecursiveSteps();
+        Log.debugLog(instance.NAME, "Removed " + instance.preRemovedNodes + " nodes in preprocessing, started with k = " + instance.startK);
+    }
+
+    /**
+     * Adds the reduced nodes and the best known solution of the sub graph to the solution.
+     */
+    private static void addBestSolution(Instance instance, Search search) {
+        // Without a solution the sub graph may be reduced partly, then all of its nodes are taken
+        if (search.isReduced()) addToSolution(instance, search.graph, search.reduceS);
+        addToSolution(instance, search.graph, search.getBestSolution());
+    }
+
+    /**
+     * Maps the dense indices of the graph back to the original node ids and adds them to the solution.
+     */
+    private static void addToSolution(Instance instance, Graph graph, List<Integer> S) {
+        for(Integer node: S) {
+            instance.S.add(graph.getId(node));
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package program.algo;
+
+import program.model.Instance;
+import program.utils.PerformanceTimer;
+import program.utils.Timer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State of one solve. Every solve gets its own context, so multiple instances can be solved in one JVM at the same time.
+ */
+public class SolverContext {
+
+    public final Instance instance;
+
+    // Number of threads for the branching, 1 solves sequentially
+    public final int parallelism;
+
+    // Recursion level from which the parallel branching continues sequentially
+    public int sequentialCutoff = 3;
+
+    // Order in which the k between the packing lower bound and the heuristic upper bound are tried
+    public enum Strategy {
+        ASCENDING, // k = lower bound, the first solution is optimal
+        DESCENDING, // k = upper bound - 1 until it fails
+        BINARY,
+        GALLOPING // k = lower bound + 0, 1, 3, 7, ... until a solution is found, then binary
+    }
+    public Strategy strategy = Strategy.DESCENDING;
+
+    // Number of failed sub problems kept per sub graph
+    public int transpositionTableSize = 1 << 18;
+
+    // Recursion level from which the graph is split into its strongly connected components again in every step, in
+    // which the reductions put nodes into the solution
+    public int decompositionLevel = 1;
+
+    // Recursion levels below which the sequential branching applies the flower rule with the updated petals
+    public int flowerLevel = 8;
+
+    // Time budgets of the local search on the cycle packing: at the root, and in every branching step where the
+    // packing is one cycle short of pruning the step
+    public long rootPackingMillis = 1000;
+    public long stepPackingMicros = 100;
+
+    // Raises the lower bound at the root to the fractional cycle packing, computed within the time budget (ms)
+    public boolean fractionalBound = false;
+    public long fractionalBoundMillis = 1000;
+
+    // Seed of the local search, the threads use seed + thread
+    public long seed = 1;
+
+    // Deadline & timers
+    public final Timer timer;
+    public final PerformanceTimer performanceTimer = new PerformanceTimer();
+
+    // Counters
+    public final LongAdder recursiveSteps = new LongAdder();
+
+    // Pool of a long running process (e.g. the daemon) for the parallel solves, else every solve creates its own pool
+    public ForkJoinPool sharedPool;
+
+    ForkJoinPool pool;
+
+    public SolverContext(Instance instance) {
+        this(instance, 1, Timer.timeout);
+    }
+
+    public SolverContext(Instance instance, int parallelism) {
+        this(instance, parallelism, Timer.timeout);
+    }
+
+    public SolverContext(Instance instance, int parallelism, long timeoutSeconds) {
+        this.instance = instance;
+        this.parallelism = parallelism;
+        this.timer = new Timer(timeoutSeconds);
+    }
+}
@@ -1,82 +1,157 @@
 package program.algo;
 
 import program.model.Graph;
-import program.model.Node;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 
-public abstract class Tarjan {
+public class Tarjan {
 
-    private static int index;
-    private static Stack<Node> stack;
-    private static List<List<Node>> components;
+    private final Graph graph;
+    private final boolean skipBidirected;
+
+    private int index;
+    private int[] stack;
+    private int stackSize;
+    private int[] indices;
+    private int[] lowLinks;
+    private boolean[] onStack;
+    private List<int[]> components;
+
+    // Explicit call stack instead of recursion: node, next & end position of its out neighbors in the neighbor stack
+    private int[] frameNodes;
+    private int[] framePositions;
+    private int[] frameEnds;
+    private int depth;
+    private int[] neighbors;
+    private int[] buffer;
 
     /**
      * Finds the strong connected components in the graph by using the Tarjan's Algorithm.
      * @param graph The graph.
-     * @return The strong connected components.
+     * @return The strong connected components as arrays of dense indices.
      */
-    public static List<List<Node>> run(Graph graph) {
+    public static List<int[]> run(Graph graph) {
+        return run(graph, false);
+    }
 
-        index = 0;
-        stack = new Stack<>();
-        components = new ArrayList<>();
+    /**
+     * Finds the strong connected components of the graph without its bidirected arcs (the 2-cycles).
+     * @param graph The graph.
+     * @return The strong connected components as arrays of dense indices.
+     */
+    public static List<int[]> runWithoutBidirected(Graph graph) {
+        return run(graph, true);
+    }
 
-        // Initialize attributes
-        for(Node node: graph.getNodes()) {
-            node.index = -1;
-            node.lowLink = -1;
-            node.onStack = false;
-        }
+    private static List<int[]> run(Graph graph, boolean skipBidirected) {
+
+        // The attributes live in a new object per run, so runs on different threads don't interfere
+        Tarjan tarjan = new Tarjan(graph, skipBidirected);
 
         // Loop over all nodes, skip the ones already visited (index != -1)
-        for(Node node: graph.getNodes()) {
-            if(node.index == -1) {
-                strongConnect(node, graph);
+        for(int node = graph.nextNode(0); node != -1; node = graph.nextNode(node + 1)) {
+            if(tarjan.indices[node] == -1) {
+                tarjan.strongConnect(node);
             }
         }
 
-        return components;
+        return tarjan.components;
+    }
+
+    private Tarjan(Graph graph, boolean skipBidirected) {
+        this.graph = graph;
+        this.skipBidirected = skipBidirected;
+        int capacity = graph.getCapacity();
+        index = 0;
+        stack = new int[capacity];
+        stackSize = 0;
+        components = new ArrayList<>();
+
+        // Initialize attributes
+        indices = new int[capacity];
+        lowLinks = new int[capacity];
+        onStack = new boolean[capacity];
+        Arrays.fill(indices, -1);
+
+        frameNodes = new int[capacity];
+        framePositions = new int[capacity];
+        frameEnds = new int[capacity];
+        depth = 0;
+        neighbors = new int[graph.getEdgeCount()];
+        buffer = new int[capacity];
     }
 
     /**
      * Starts at the given node and looks for all nodes which are connected by a cycle.
-     * Stores the found cyclic component in "components".
-     * @param node The start node.
+     * Stores the found cyclic component in "components". Iterative, so deep graphs don't overflow the stack.
+     * @param root The start node.
      */
-    private static void strongConnect(Node node, Graph graph) {
+    private void strongConnect(int root) {
+        visit(root);
+        while(depth > 0) {
+            int frame = depth - 1;
+            int node = frameNodes[frame];
 
-        // Set the node's index to the current index and increment it.
-        node.index = index;
-        node.lowLink = index;
-        index++;
-        stack.push(node);
-        node.onStack = true;
-
-        // Loop over all out neighbors. Recursively call strongConnect() if they are not visited yet and update the lowLink-attribute
-        // LowLink is the lowest index of all nodes in the component of the selected node
-        for(Integer outId: node.getOutIds()) {
-            Node out = graph.getNode(outId);
-            if(out.index == -1) {
-                strongConnect(out, graph);
-                node.lowLink = Math.min(node.lowLink, out.lowLink);
-            } else if(out.onStack) {
-                node.lowLink = Math.min(node.lowLink, out.index);
+            // Loop over all out neighbors. Visit them if they are not visited yet, else update the lowLink-attribute
+            // LowLink is the lowest index of all nodes in the component of the selected node
+            if(framePositions[frame] < frameEnds[frame]) {
+                int out = neighbors[framePositions[frame]++];
+                if(indices[out] == -1) {
+                    visit(out);
+                } else if(onStack[out]) {
+                    lowLinks[node] = Math.min(lowLinks[node], indices[out]);
+                }
+                continue;
+            }
+
+            // If lowLink == index, all nodes of the component are found. The component is build from the nodes on the stack and is stored in "components".
+            if(lowLinks[node] == indices[node]) {
+                int start = stackSize;
+                do {
+                    start--;
+                    onStack[stack[start]] = false;
+                } while(stack[start] != node);
+                int[] component = new int[stackSize - start];
+                // Pop order, like the original stack based version
+                for(int i = 0; i < component.length; i++) component[i] = stack[stackSize - 1 - i];
+                stackSize = start;
+                components.add(component);
+            }
+
+            // Return to the parent
+            depth--;
+            if(depth > 0) {
+                int parent = frameNodes[depth - 1];
+                lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
             }
         }
+    }
 
-        // If lowLink == index, all nodes of the component are found. The component is build from the nodes on the stack and is stored in "components".
-        if(node.lowLink.equals(node.index)) {
-            List<Node> component = new ArrayList<>();
-            Node nodeFromStack;
-            do {
-                nodeFromStack = stack.pop();
-                nodeFromStack.onStack = false;
-                component.add(nodeFromStack);
-            } while(!nodeFromStack.equals(node));
-            components.add(component);
+    /**
+     * Sets the node's index to the current index, increments it and pushes the node with its out neighbors.
+     */
+    private void visit(int node) {
+        indices[node] = index;
+        lowLinks[node] = index;
+        index++;
+        stack[stackSize++] = node;
+        onStack[node] = true;
+
+        int start = (depth > 0) ? frameEnds[depth - 1] : 0;
+        int count = graph.getOutIds(node, buffer);
+        if(skipBidirected) {
+            int kept = 0;
+            for(int i = 0; i < count; i++) {
+                if(!graph.hasArc(buffer[i], node)) buffer[kept++] = buffer[i];
+            }
+            count = kept;
         }
+        System.arraycopy(buffer, 0, neighbors, start, count);
+        frameNodes[depth] = node;
+        framePositions[depth] = start;
+        frameEnds[depth] = start + count;
+        depth++;
     }
 }
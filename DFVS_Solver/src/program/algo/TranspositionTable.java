@@ -0,0 +1,87 @@
+package program.algo;
+
+/**
+ * Bounded cache of failed sub problems: stores for the hash of a graph the largest k for which the branching failed.
+ * The slots are grouped in buckets of 4, a full bucket evicts with the clock (second chance) strategy.
+ */
+public class TranspositionTable {
+
+    private static final int BUCKET_SIZE = 4;
+
+    private final long[] hashes;
+    private final int[] failedKs;
+    private final boolean[] used;
+    private final boolean[] referenced;
+    private final int[] clockHands;
+    private final int bucketMask;
+
+    /**
+     * @param capacity The maximum number of entries, rounded up to a power of two.
+     */
+    public TranspositionTable(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(capacity / BUCKET_SIZE - 1, 1)) << 1;
+        hashes = new long[buckets * BUCKET_SIZE];
+        failedKs = new int[buckets * BUCKET_SIZE];
+        used = new boolean[buckets * BUCKET_SIZE];
+        referenced = new boolean[buckets * BUCKET_SIZE];
+        clockHands = new int[buckets];
+        bucketMask = buckets - 1;
+    }
+
+    private int getBucket(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & bucketMask;
+    }
+
+    /**
+     * @return True if the graph with this hash is known to fail for k.
+     */
+    public synchronized boolean isFailure(long hash, int k) {
+        int start = getBucket(hash) * BUCKET_SIZE;
+        for(int slot = start; slot < start + BUCKET_SIZE; slot++) {
+            if(used[slot] && hashes[slot] == hash) {
+                referenced[slot] = true;
+                return failedKs[slot] >= k;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores that the graph with this hash fails for k (and so for all smaller k).
+     */
+    public synchronized void putFailure(long hash, int k) {
+        int bucket = getBucket(hash);
+        int start = bucket * BUCKET_SIZE;
+        for(int slot = start; slot < start + BUCKET_SIZE; slot++) {
+            if(used[slot] && hashes[slot] == hash) {
+                failedKs[slot] = Math.max(failedKs[slot], k);
+                referenced[slot] = true;
+                return;
+            }
+        }
+        for(int slot = start; slot < start + BUCKET_SIZE; slot++) {
+            if(!used[slot]) {
+                set(slot, hash, k);
+                return;
+            }
+        }
+        // Clock: skip the referenced entries once and take the first one which wasn't used since
+        while(true) {
+            int slot = start + clockHands[bucket];
+            clockHands[bucket] = (clockHands[bucket] + 1) % BUCKET_SIZE;
+            if(referenced[slot]) {
+                referenced[slot] = false;
+            } else {
+                set(slot, hash, k);
+                return;
+            }
+        }
+    }
+
+    private void set(int slot, long hash, int k) {
+        hashes[slot] = hash;
+        failedKs[slot] = k;
+        used[slot] = true;
+        referenced[slot] = false;
+    }
+}
@@ -0,0 +1,538 @@
+package program.algo;
+
+import program.model.Graph;
+import program.utils.TimeoutException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Branch & reduce solver for vertex cover. If every arc of the graph is part of a 2-cycle, the graph is undirected and
+ * its DFVS are exactly its vertex covers, so this replaces the cycle branching there.
+ * Reductions: degree 0 & 1, degree 2 (triangle or folding), domination and the LP reduction of Nemhauser & Trotter,
+ * which removes the crowns. Lower bounds: the LP value and a greedy clique cover.
+ * Branching on a node of max degree: either the node and its mirrors are in the cover, or all its neighbors.
+ * Folded nodes are appended as new nodes, all changes are recorded on a trail and undone on the way back.
+ */
+public class VertexCover {
+
+    private final SolverContext context;
+
+    // Node of the cover -> dense index in the graph, only for the initial nodes
+    private final int[] graphIndices;
+    private final int initialCount;
+
+    // Adjacency lists, they only grow by folding & contain removed nodes
+    private final int[][] adj;
+    private final int[] adjCount;
+    private final boolean[] alive;
+    private final int[] degree;
+    private int size; // Allocated nodes (initial & folded)
+
+    // Undo trail: a removed node is stored as its index, a folded node as ~index
+    private int[] trail;
+    private int trailSize = 0;
+
+    // Scratch arrays
+    private final int[] marks;
+    private int stamp = 0;
+    private final int[] matchLeft;
+    private final int[] matchRight;
+    private final int[] visited;
+    private final int[] frameNodes; // Explicit stack of the augmenting path search: left node & next neighbor position
+    private final int[] framePositions;
+    private final boolean[] reachedLeft;
+    private final boolean[] reachedRight;
+    private final int[] queue;
+    private final int[] cliques;
+    private final int[] cliqueSizes;
+    private final int[] cliqueCounts;
+
+    private VertexCover(SolverContext context, Graph graph) {
+        this.context = context;
+        this.graphIndices = graph.getNodeIds();
+        this.initialCount = graphIndices.length;
+        int capacity = initialCount + initialCount / 2 + 1; // Every fold removes 3 nodes & adds 1
+        int[] indices = new int[graph.getCapacity()];
+        for(int i = 0; i < initialCount; i++) indices[graphIndices[i]] = i;
+
+        adj = new int[capacity][];
+        adjCount = new int[capacity];
+        alive = new boolean[capacity];
+        degree = new int[capacity];
+        for(int i = 0; i < initialCount; i++) {
+            int[] outIds = graph.getOutIds(graphIndices[i]);
+            adj[i] = new int[outIds.length];
+            for(int out: outIds) adj[i][adjCount[i]++] = indices[out];
+            alive[i] = true;
+            degree[i] = adjCount[i];
+        }
+        size = initialCount;
+        trail = new int[capacity * 2];
+
+        marks = new int[capacity];
+        matchLeft = new int[capacity];
+        matchRight = new int[capacity];
+        Arrays.fill(matchLeft, -1);
+        Arrays.fill(matchRight, -1);
+        visited = new int[capacity];
+        frameNodes = new int[capacity];
+        framePositions = new int[capacity];
+        reachedLeft = new boolean[capacity];
+        reachedRight = new boolean[capacity];
+        queue = new int[capacity];
+        cliques = new int[capacity];
+        cliqueSizes = new int[capacity];
+        cliqueCounts = new int[capacity];
+        Arrays.fill(cliques, -1);
+    }
+
+    /**
+     * Finds a vertex cover of at most k nodes.
+     * @param graph A graph where every arc is bidirected.
+     * @param k The max size of the cover.
+     * @return The cover as dense indices of the graph, or null if there is none with at most k nodes.
+     */
+    public static List<Integer> solve(SolverContext context, Graph graph, int k) throws TimeoutException {
+        VertexCover vc = new VertexCover(context, graph);
+        List<Integer> cover = vc.branch(k);
+        if(cover == null) return null;
+        List<Integer> S = new ArrayList<>(cover.size());
+        for(int node: cover) S.add(vc.graphIndices[node]);
+        return S;
+    }
+
+    private List<Integer> branch(int k) throws TimeoutException {
+
+        context.recursiveSteps.increment();
+        if (context.timer.isTimeout()) throw new TimeoutException("The program stopped after " + context.timer.getTimeout() + " seconds.");
+
+        int mark = trailSize;
+        List<Integer> cover = new ArrayList<>();
+        List<int[]> folds = new ArrayList<>();
+        List<Integer> S = null;
+
+        k = reduce(k, cover, folds);
+        if(k >= 0 && getCliqueCoverBound() <= k) {
+            int v = getMaxDegreeNode();
+            if(v == -1) {
+                S = new ArrayList<>();
+            } else {
+                int[] neighbors = getNeighbors(v);
+                List<Integer> mirrors = getMirrors(v, neighbors);
+
+                // Node & its mirrors into the cover
+                int branchMark = trailSize;
+                if(k >= 1 + mirrors.size()) {
+                    removeNode(v);
+                    for(int mirror: mirrors) removeNode(mirror);
+                    S = branch(k - 1 - mirrors.size());
+                    backtrack(branchMark);
+                    if(S != null) {
+                        S.add(v);
+                        S.addAll(mirrors);
+                    }
+                }
+                if(S == null && k >= neighbors.length) {
+                    // All neighbors into the cover
+                    for(int neighbor: neighbors) removeNode(neighbor);
+                    S = branch(k - neighbors.length);
+                    backtrack(branchMark);
+                    if(S != null) for(int neighbor: neighbors) S.add(neighbor);
+                }
+            }
+        }
+
+        if(S != null) {
+            S.addAll(cover);
+            unfold(S, folds);
+        }
+        backtrack(mark);
+        return S;
+    }
+
+    /**
+     * Applies the reductions until none applies anymore, the LP reduction only when the others are exhausted.
+     * @param cover The nodes which are in the cover.
+     * @param folds The folds as {node, neighbor, neighbor, folded node}.
+     * @return The remaining k, negative if the lower bound exceeds it.
+     */
+    private int reduce(int k, List<Integer> cover, List<int[]> folds) {
+        boolean changed = true;
+        while(changed && k >= 0) {
+            changed = false;
+            for(int v = 0; v < size && k >= 0; v++) {
+                if(!alive[v]) continue;
+                if(degree[v] == 0) {
+                    removeNode(v);
+                } else if(degree[v] == 1) {
+                    k -= take(getNeighbors(v)[0], cover);
+                } else if(degree[v] == 2) {
+                    int[] neighbors = getNeighbors(v);
+                    if(isAdjacent(neighbors[0], neighbors[1])) { // Triangle
+                        k -= take(neighbors[0], cover);
+                        k -= take(neighbors[1], cover);
+                    } else {
+                        folds.add(fold(v, neighbors[0], neighbors[1]));
+                        k--;
+                    }
+                } else {
+                    int dominated = getDominatedNeighbor(v);
+                    if(dominated == -1) continue;
+                    k -= take(v, cover);
+                }
+                changed = true;
+            }
+            if(!changed && k >= 0) {
+                int matching = getMatching();
+                if((matching + 1) / 2 > k) return -1;
+                int taken = applyLpReduction(cover);
+                k -= taken;
+                changed = taken > 0;
+            }
+        }
+        return k;
+    }
+
+    private int take(int v, List<Integer> cover) {
+        removeNode(v);
+        cover.add(v);
+        return 1;
+    }
+
+    /**
+     * Degree 2 rule for a node v with the non-adjacent neighbors a & b: they are replaced by a new node adjacent to the
+     * neighbors of a & b. If the new node is in a cover, a & b are in the cover of the graph, else v.
+     */
+    private int[] fold(int v, int a, int b) {
+        int w = size++;
+        stamp++;
+        marks[v] = stamp;
+        int count = 0;
+        int[] neighbors = new int[degree[a] + degree[b]];
+        for(int x: new int[] {a, b}) {
+            for(int i = 0; i < adjCount[x]; i++) {
+                int y = adj[x][i];
+                if(alive[y] && marks[y] != stamp) {
+                    marks[y] = stamp;
+                    neighbors[count++] = y;
+                }
+            }
+        }
+        removeNode(v);
+        removeNode(a);
+        removeNode(b);
+        adj[w] = Arrays.copyOf(neighbors, count);
+        adjCount[w] = count;
+        matchLeft[w] = -1; // The index may have been used by an undone fold
+        matchRight[w] = -1;
+        degree[w] = count;
+        alive[w] = true;
+        for(int i = 0; i < count; i++) {
+            int y = neighbors[i];
+            if(adjCount[y] == adj[y].length) adj[y] = Arrays.copyOf(adj[y], Math.max(4, adj[y].length * 2));
+            adj[y][adjCount[y]++] = w;
+            degree[y]++;
+        }
+        record(~w);
+        return new int[] {v, a, b, w};
+    }
+
+    /**
+     * Replaces the folded nodes by the nodes of the graph before the folding, the last fold first.
+     */
+    private void unfold(List<Integer> S, List<int[]> folds) {
+        for(int i = folds.size() - 1; i >= 0; i--) {
+            int[] fold = folds.get(i);
+            if(S.remove(Integer.valueOf(fold[3]))) {
+                S.add(fold[1]);
+                S.add(fold[2]);
+            } else {
+                S.add(fold[0]);
+            }
+        }
+    }
+
+    /**
+     * A neighbor u of v is dominated if N[u] is a subset of N[v], then v is in an optimal cover.
+     * @return A dominated neighbor, or -1 if there is none.
+     */
+    private int getDominatedNeighbor(int v) {
+        stamp++;
+        marks[v] = stamp;
+        for(int i = 0; i < adjCount[v]; i++) marks[adj[v][i]] = stamp;
+        for(int i = 0; i < adjCount[v]; i++) {
+            int u = adj[v][i];
+            if(!alive[u] || degree[u] > degree[v]) continue;
+            boolean dominated = true;
+            for(int j = 0; j < adjCount[u] && dominated; j++) {
+                int x = adj[u][j];
+                dominated = !alive[x] || marks[x] == stamp;
+            }
+            if(dominated) return u;
+        }
+        return -1;
+    }
+
+    /**
+     * Maximum matching of the bipartite double cover (left & right copy of every node, an edge u-v becomes the edges
+     * u-v' & v-u') with augmenting paths. Its size is twice the value of the LP relaxation.
+     * The matching of the last call is kept: only its pairs with a removed node are dropped (or ones outdated by a
+     * backtrack), then the free left nodes are augmented again. A search which failed leaves its right nodes visited
+     * until the next augmentation, they can't reach a free right node, so the repair costs one search per augmentation
+     * instead of one per node.
+     */
+    private int getMatching() {
+        for(int v = 0; v < size; v++) {
+            int u = matchLeft[v];
+            if(u != -1 && (u >= size || !alive[v] || !alive[u] || matchRight[u] != v)) matchLeft[v] = -1;
+            int w = matchRight[v];
+            if(w != -1 && (w >= size || !alive[v] || !alive[w] || matchLeft[w] != v)) matchRight[v] = -1;
+        }
+        int matching = 0;
+        for(int v = 0; v < size; v++) {
+            if(matchLeft[v] != -1) matching++;
+        }
+        stamp++;
+        for(int v = 0; v < size; v++) {
+            if(!alive[v] || matchLeft[v] != -1) continue;
+            if(augment(v)) {
+                matching++;
+                stamp++;
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * DFS for an augmenting path from the free left node v. Iterative with an explicit stack of left nodes, so long
+     * paths on large kernels don't overflow the call stack. Every frame advanced to the right node at its position - 1,
+     * so the path is flipped from the stack when a free right node is reached.
+     */
+    private boolean augment(int v) {
+        frameNodes[0] = v;
+        framePositions[0] = 0;
+        int depth = 1;
+        while(depth > 0) {
+            int frame = depth - 1;
+            int x = frameNodes[frame];
+            if(framePositions[frame] == adjCount[x]) {
+                depth--;
+                continue;
+            }
+            int u = adj[x][framePositions[frame]++];
+            if(!alive[u] || visited[u] == stamp) continue;
+            visited[u] = stamp;
+            if(matchRight[u] == -1) {
+                for(int f = 0; f <= frame; f++) {
+                    int left = frameNodes[f];
+                    int right = adj[left][framePositions[f] - 1];
+                    matchLeft[left] = right;
+                    matchRight[right] = left;
+                }
+                return true;
+            }
+            // Continue at the partner of u
+            frameNodes[depth] = matchRight[u];
+            framePositions[depth] = 0;
+            depth++;
+        }
+        return false;
+    }
+
+    /**
+     * Derives a half-integral optimal LP solution from the matching with Koenig's theorem: the nodes with value 1 are
+     * in an optimal cover, the ones with value 0 are not (Nemhauser & Trotter).
+     * @return The number of nodes put into the cover.
+     */
+    private int applyLpReduction(List<Integer> cover) {
+        // Alternating paths from the unmatched left nodes
+        Arrays.fill(reachedLeft, 0, size, false);
+        Arrays.fill(reachedRight, 0, size, false);
+        int head = 0, tail = 0;
+        for(int v = 0; v < size; v++) {
+            if(alive[v] && matchLeft[v] == -1) {
+                reachedLeft[v] = true;
+                queue[tail++] = v;
+            }
+        }
+        while(head < tail) {
+            int v = queue[head++];
+            for(int i = 0; i < adjCount[v]; i++) {
+                int u = adj[v][i];
+                if(!alive[u] || reachedRight[u]) continue;
+                reachedRight[u] = true;
+                int next = matchRight[u];
+                if(next != -1 && !reachedLeft[next]) {
+                    reachedLeft[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        // The min vertex cover of the double cover holds the unreached left & the reached right nodes
+        List<Integer> one = new ArrayList<>();
+        List<Integer> zero = new ArrayList<>();
+        for(int v = 0; v < size; v++) {
+            if(!alive[v]) continue;
+            boolean left = !reachedLeft[v];
+            boolean right = reachedRight[v];
+            if(left && right) one.add(v);
+            else if(!left && !right) zero.add(v);
+        }
+        for(int v: one) take(v, cover);
+        for(int v: zero) removeNode(v);
+        return one.size();
+    }
+
+    /**
+     * Greedy partition into cliques, a clique of c nodes needs c - 1 of them in the cover.
+     * The nodes join the largest clique they are adjacent to completely, in the order of their degree.
+     * @return The lower bound n - number of cliques.
+     */
+    private int getCliqueCoverBound() {
+        int n = 0;
+        int maxDegree = 0;
+        for(int v = 0; v < size; v++) {
+            if(!alive[v]) continue;
+            n++;
+            maxDegree = Math.max(maxDegree, degree[v]);
+        }
+        if(n == 0) return 0;
+        // Counting sort by degree
+        int[] starts = new int[maxDegree + 2];
+        for(int v = 0; v < size; v++) if(alive[v]) starts[degree[v] + 1]++;
+        for(int d = 0; d <= maxDegree; d++) starts[d + 1] += starts[d];
+        int[] order = new int[n];
+        for(int v = 0; v < size; v++) if(alive[v]) order[starts[degree[v]]++] = v;
+
+        int cliqueCount = 0;
+        for(int v: order) {
+            int best = -1;
+            for(int i = 0; i < adjCount[v]; i++) {
+                int u = adj[v][i];
+                if(alive[u] && cliques[u] != -1 && cliques[u] < cliqueCount) cliqueCounts[cliques[u]] = 0;
+            }
+            for(int i = 0; i < adjCount[v]; i++) {
+                int u = adj[v][i];
+                if(!alive[u] || cliques[u] == -1 || cliques[u] >= cliqueCount) continue;
+                int clique = cliques[u];
+                if(++cliqueCounts[clique] == cliqueSizes[clique] && (best == -1 || cliqueSizes[clique] > cliqueSizes[best])) best = clique;
+            }
+            if(best == -1) {
+                best = cliqueCount++;
+                cliqueSizes[best] = 0;
+            }
+            cliques[v] = best;
+            cliqueSizes[best]++;
+        }
+        // Reset for the next call, the clique ids are only valid below cliqueCount
+        for(int v: order) cliques[v] = -1;
+        return n - cliqueCount;
+    }
+
+    private int getMaxDegreeNode() {
+        int best = -1;
+        for(int v = 0; v < size; v++) {
+            if(alive[v] && (best == -1 || degree[v] > degree[best])) best = v;
+        }
+        return best;
+    }
+
+    /**
+     * A node u in distance 2 of v is a mirror of v, if the neighbors of v which are not adjacent to u form a clique.
+     * Some optimal cover contains either all neighbors of v, or v together with all its mirrors, so the branching
+     * needs no other case. (An optimal cover without v only has to contain the neighbors of v, not the mirrors.)
+     */
+    private List<Integer> getMirrors(int v, int[] neighbors) {
+        List<Integer> mirrors = new ArrayList<>();
+        stamp++;
+        int neighborStamp = stamp;
+        marks[v] = neighborStamp;
+        for(int neighbor: neighbors) marks[neighbor] = neighborStamp;
+        List<Integer> distance2 = new ArrayList<>();
+        for(int neighbor: neighbors) {
+            for(int i = 0; i < adjCount[neighbor]; i++) {
+                int u = adj[neighbor][i];
+                if(alive[u] && marks[u] != neighborStamp && marks[u] != neighborStamp + 1) {
+                    marks[u] = neighborStamp + 1;
+                    distance2.add(u);
+                }
+            }
+        }
+        stamp++;
+        int[] rest = new int[neighbors.length];
+        for(int u: distance2) {
+            int restCount = 0;
+            for(int neighbor: neighbors) {
+                if(!isAdjacent(neighbor, u)) rest[restCount++] = neighbor;
+            }
+            boolean clique = true;
+            for(int i = 0; i < restCount && clique; i++) {
+                for(int j = i + 1; j < restCount && clique; j++) clique = isAdjacent(rest[i], rest[j]);
+            }
+            if(clique) mirrors.add(u);
+        }
+        return mirrors;
+    }
+
+    private boolean isAdjacent(int u, int w) {
+        if(degree[u] > degree[w]) {
+            int swap = u;
+            u = w;
+            w = swap;
+        }
+        for(int i = 0; i < adjCount[u]; i++) {
+            if(adj[u][i] == w) return alive[w];
+        }
+        return false;
+    }
+
+    private int[] getNeighbors(int v) {
+        int[] neighbors = new int[degree[v]];
+        int count = 0;
+        for(int i = 0; i < adjCount[v]; i++) {
+            if(alive[adj[v][i]]) neighbors[count++] = adj[v][i];
+        }
+        return neighbors;
+    }
+
+    private void removeNode(int v) {
+        alive[v] = false;
+        for(int i = 0; i < adjCount[v]; i++) {
+            if(alive[adj[v][i]]) degree[adj[v][i]]--;
+        }
+        record(v);
+    }
+
+    private void record(int entry) {
+        if(trailSize == trail.length) trail = Arrays.copyOf(trail, trailSize * 2);
+        trail[trailSize++] = entry;
+    }
+
+    /**
+     * Undoes the removals & folds since the mark, the last first.
+     */
+    private void backtrack(int mark) {
+        while(trailSize > mark) {
+            int entry = trail[--trailSize];
+            if(entry >= 0) {
+                alive[entry] = true;
+                for(int i = 0; i < adjCount[entry]; i++) {
+                    if(alive[adj[entry][i]]) degree[adj[entry][i]]++;
+                }
+            } else {
+                int w = ~entry;
+                for(int i = 0; i < adjCount[w]; i++) {
+                    int y = adj[w][i];
+                    adjCount[y]--;
+                    degree[y]--;
+                }
+                alive[w] = false;
+                adj[w] = null;
+                adjCount[w] = 0;
+                size--;
+            }
+        }
+    }
+}
@@ -2,27 +2,24 @@ package program.log;
 
 import program.model.Cycle;
 
-public abstract  class CycleCounter {
+import java.util.List;
 
-    private static int[] sizeAcc;
-    private static int[] count;
+public class CycleCounter {
 
-    public static void init(int k) {
+    private final int[] sizeAcc;
+    private final int[] count;
+
+    public CycleCounter(int k) {
         sizeAcc = new int[k];
         count = new int[k];
-
-        for(int i = 0; i < k; i++) {
-            sizeAcc[i] = 0;
-            count[i] = 0;
-        }
     }
 
-    public static void count(Cycle cycle, int level) {
+    public synchronized void count(Cycle cycle, int level) {
         sizeAcc[level] += cycle.size();
         count[level]++;
     }
 
-    public static float[] getAverageCycleSize() {
+    public float[] getAverageCycleSize() {
         float[] averageCycleSize = new float[sizeAcc.length];
         for(int i = 0; i < sizeAcc.length; i++) {
             averageCycleSize[i] = (float) sizeAcc[i] / count[i];
@@ -30,7 +27,23 @@ public abstract  class CycleCounter {
         return averageCycleSize;
     }
 
-    public static int[] getRecursiveSteps() {
+    public int[] getRecursiveSteps() {
         return count;
     }
+
+    /**
+     * Sums up the counts per level of multiple counters, e.g. of independent sub graphs.
+     */
+    public static CycleCounter merge(List<CycleCounter> cycleCounters) {
+        int k = 0;
+        for(CycleCounter cycleCounter: cycleCounters) k = Math.max(k, cycleCounter.count.length);
+        CycleCounter merged = new CycleCounter(k);
+        for(CycleCounter cycleCounter: cycleCounters) {
+            for(int i = 0; i < cycleCounter.count.length; i++) {
+                merged.sizeAcc[i] += cycleCounter.sizeAcc[i];
+                merged.count[i] += cycleCounter.count[i];
+            }
+        }
+        return merged;
+    }
 }
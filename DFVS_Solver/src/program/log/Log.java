@@ -8,6 +8,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public abstract class Log {
 
@@ -18,11 +21,14 @@ public abstract class Log {
     public static boolean ignore;
     public static int level = 0;
 
+    // While a batch solves in parallel, the csv rows are appended by this single thread, else directly
+    private static ExecutorService writer;
+
     public static void debugLog(String name, String message){
         debugLog(name, message, false);
     }
 
-    public static void debugLog(String name, String message, boolean error){
+    public static synchronized void debugLog(String name, String message, boolean error){
 
         //Ignore Log
         if(ignore) return;
@@ -74,11 +80,7 @@ public abstract class Log {
         //Ignore Log
         if(ignore) return;
 
-        try(PrintWriter output = new PrintWriter(new FileWriter(MAIN_LOG_PATH,true)))
-        {
-            output.println(instance.NAME + "," + instance.N + "," + instance.M + "," + instance.OPTIMAL_K + "," + instance.solvedK + "," + instance.startK + "," + verified + "," + instance.preRemovedNodes + "," + instance.removedFlowers + "," + instance.recursiveSteps + "," + millis + "," + packingMillis);
-        }
-        catch (Exception ignored) {}
+        append(MAIN_LOG_PATH, instance.NAME + "," + instance.N + "," + instance.M + "," + instance.OPTIMAL_K + "," + instance.solvedK + "," + instance.startK + "," + verified + "," + instance.preRemovedNodes + "," + instance.removedFlowers + "," + instance.recursiveSteps + "," + millis + "," + packingMillis + System.lineSeparator());
     }
 
     public static void detailLog(Instance instance) {
@@ -86,11 +88,47 @@ public abstract class Log {
         //Ignore Log
         if(ignore) return;
 
-        try(PrintWriter output = new PrintWriter(new FileWriter(DETAIL_LOG_PATH,true)))
-        {
-            for(int i = 0; i < instance.averageCycleSize.length; i++) {
-                output.println(instance.NAME + "," + i + "," + instance.averageCycleSize[i] + "," + instance.recursiveStepsPerK[i]);
+        StringBuilder rows = new StringBuilder();
+        for(int i = 0; i < instance.averageCycleSize.length; i++) {
+            rows.append(instance.NAME).append(",").append(i).append(",").append(instance.averageCycleSize[i]).append(",").append(instance.recursiveStepsPerK[i]).append(System.lineSeparator());
+        }
+        append(DETAIL_LOG_PATH, rows.toString());
+    }
+
+    /**
+     * Starts the writer thread, all csv rows are written by it in the order they are logged until stopWriter().
+     */
+    public static synchronized void startWriter() {
+        if(writer == null) writer = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Writes the pending rows and stops the writer thread. Waits until all rows are written, if the waiting thread is
+     * interrupted, the rows not written yet are written by it.
+     */
+    public static synchronized void stopWriter() {
+        if(writer == null) return;
+        writer.shutdown();
+        try {
+            while(!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Log: Still writing the csv rows...");
             }
+        } catch (InterruptedException e) {
+            for(Runnable rows: writer.shutdownNow()) rows.run();
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    private static synchronized void append(String path, String rows) {
+        if(writer != null) writer.execute(() -> write(path, rows));
+        else write(path, rows);
+    }
+
+    private static void write(String path, String rows) {
+        try(PrintWriter output = new PrintWriter(new FileWriter(path,true)))
+        {
+            output.print(rows);
         }
         catch (Exception ignored) {}
     }
@@ -1,66 +1,101 @@
 package program.model;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
 public class Cycle extends Component {
 
-    private final List<Node> nodes = new ArrayList<>();
+    private int[] nodes;
+    private int size;
 
-    public Cycle(Node... nodes) {
-        this.nodes.addAll(Arrays.asList(nodes));
+    public Cycle(int... nodes) {
+        this.nodes = Arrays.copyOf(nodes, Math.max(nodes.length, 4));
+        this.size = nodes.length;
     }
 
-    public void add(Node node) {
-        nodes.add(node);
+    public void add(int node) {
+        if(size == nodes.length) nodes = Arrays.copyOf(nodes, size * 2);
+        nodes[size++] = node;
     }
 
-    public List<Node> getNodes() {
-        return nodes;
+    public int[] getNodes() {
+        return Arrays.copyOf(nodes, size);
     }
 
-    public Node get(int index) {
-        return nodes.get(index);
+    public int get(int index) {
+        return nodes[index];
     }
 
     public int size() {
-        return nodes.size();
+        return size;
     }
 
-    public boolean contains(Node node) {
-        return nodes.contains(node);
-    }
-
-    public boolean containsId(Integer id) {
-        for(Node node: nodes) {
-            if(node.id.equals(id)) return true;
+    public boolean contains(int node) {
+        for(int i = 0; i < size; i++) {
+            if(nodes[i] == node) return true;
         }
         return false;
     }
 
-    public boolean isFullyConnected(Integer otherId) {
-        for(Node node: nodes) {
-            if(node.id.equals(otherId)) return false;
-            if(!node.getOutIds().contains(otherId)) return false;
-            if(!node.getInIds().contains(otherId)) return false;
+    public boolean isFullyConnected(int otherId, Graph graph) {
+        for(int i = 0; i < size; i++) {
+            if(nodes[i] == otherId) return false;
+            if(!graph.hasArc(nodes[i], otherId)) return false;
+            if(!graph.hasArc(otherId, nodes[i])) return false;
         }
         return true;
     }
 
-    public Cycle copy() {
-        Cycle copy = new Cycle();
-        for(Node node: nodes) {
-            copy.add(node.copy());
+    /**
+     * Sorts the nodes descending by the given value per node, nodes with equal values keep their reversed order.
+     * @param values The value of every dense index.
+     */
+    public void sortDescending(int[] values) {
+        // Stable insertion sort ascending, then reverse (cycles are short)
+        for(int i = 1; i < size; i++) {
+            int node = nodes[i];
+            int j = i - 1;
+            while(j >= 0 && values[nodes[j]] > values[node]) {
+                nodes[j + 1] = nodes[j];
+                j--;
+            }
+            nodes[j + 1] = node;
         }
+        for(int i = 0, j = size - 1; i < j; i++, j--) {
+            int swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+    }
+
+    /**
+     * Sorts the nodes descending by the given value per node, nodes with equal values keep their order.
+     * @param values The value of every dense index.
+     */
+    public void sortDescending(double[] values) {
+        for(int i = 1; i < size; i++) {
+            int node = nodes[i];
+            int j = i - 1;
+            while(j >= 0 && values[nodes[j]] < values[node]) {
+                nodes[j + 1] = nodes[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+        }
+    }
+
+    public Cycle copy() {
+        Cycle copy = new Cycle(getNodes());
         copy.setK(getK());
         return copy;
     }
 
     @Override
     public String toString() {
-        List<String> nodeLabels = nodes.stream().map(Node::toString).collect(Collectors.toList());
-        return String.join("-", nodeLabels);
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < size; i++) {
+            if(i > 0) builder.append("-");
+            builder.append(nodes[i]);
+        }
+        return builder.toString();
     }
 }
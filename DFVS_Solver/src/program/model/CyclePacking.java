@@ -37,35 +37,35 @@ public class CyclePacking {
             PackingRules.upgradeFullyConnected(pair, packingGraph);
             if(pair.size() == 2) PackingRules.upgradeK2Quad(pair, packingGraph);
 
-            for (Node node : pair.getNodes()) {
-                packingGraph.removeNode(node.id);
+            for (int node : pair.getNodes()) {
+                packingGraph.removeNode(node);
             }
             cycles.add(pair);
 
             List<Integer> reduceS = Reduction.applyRules(packingGraph, false);
             for(Integer nodeId: reduceS) {
                 // Add dummy node
-                cycles.add(new Cycle(new Node(nodeId)));
+                cycles.add(new Cycle(nodeId));
             }
 
         }
 
         // Add cycles to the packing as long as a cycle is found
-        while(!DAG.isDAGFast(packingGraph) && size() <= k) {
+        while(!DAG.isDAG(packingGraph) && size() <= k) {
             Cycle cycle = LightBFS.findShortestCycle(packingGraph);
 
             if(cycle.size() == 3) PackingRules.upgradeTriforce(cycle, packingGraph);
             if(cycle.size() == 3) PackingRules.upgradeK2Penta(cycle, packingGraph);
 
-            for (Node node : cycle.getNodes()) {
-                packingGraph.removeNode(node.id);
+            for (int node : cycle.getNodes()) {
+                packingGraph.removeNode(node);
             }
             cycles.add(cycle);
 
             List<Integer> reduceS = Reduction.applyRules(packingGraph, false);
             for(Integer nodeId: reduceS) {
                 // Add dummy node
-                cycles.add(new Cycle(new Node(nodeId)));
+                cycles.add(new Cycle(nodeId));
             }
         }
     }
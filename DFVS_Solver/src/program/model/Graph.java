@@ -2,47 +2,294 @@ package program.model;
 
 
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Directed graph in compressed sparse row format. The original node ids are remapped to the dense range 0..n-1,
+ * all algorithms work on the dense indices and only the solution is mapped back with getId().
+ * The rows of the initial arcs are immutable and shared between copies, removed nodes are tracked in an alive bitmap.
+ * Arcs added later by the chain rule or by removing forbidden nodes are stored in separate per node lists.
+ * Arcs removed by the reduction rules are marked in a bitmap over the initial rows, removed added arcs as ~target.
+ * In the reversible mode every node removal and added arc is recorded on a trail, so the branching can undo its changes
+ * with backtrack() instead of copying the graph.
+ * The graph keeps a Zobrist hash of its removed and bypassed nodes and removed arcs. These sets together determine
+ * the remaining arcs, so equal hashes mean equal graphs (up to collisions), no matter in which order they were removed.
+ */
 public class Graph {
 
-    private final Map<Integer, Node> nodes = new LinkedHashMap<>();
+    // Dense index -> original id
+    private final int[] ids;
 
-    public List<Node> getNodes() {
-        return nodes.values().stream().toList();
+    // Initial arcs (shared between copies, rows are sorted)
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inTargets;
+
+    // Added arcs
+    private final int[][] addedOut;
+    private final int[][] addedIn;
+    private final int[] addedOutCount;
+    private final int[] addedInCount;
+
+    // Removed arcs: bits over the positions in outTargets & inTargets
+    private final long[] removedOut;
+    private final long[] removedIn;
+    private int removedArcCount = 0;
+
+    // Alive bitmap & degrees counting only arcs between alive nodes
+    private final long[] alive;
+    private final int[] outDegree;
+    private final int[] inDegree;
+    private int nodeCount;
+
+    // Reduction attribute
+    private final boolean[] updated;
+    private int[] updatedStack;
+    private int updatedCount = 0;
+
+    // Zobrist keys (shared between copies) & hash
+    private final long[] removedKeys;
+    private final long[] bypassedKeys;
+    private long hash = 0;
+
+    // Undo trail: a removed node is stored as its index, an added arc u -> w as ~u (w is the last added out arc of u),
+    // a bypassed node additionally as n + index, a removed arc u -> w as w followed by 2n + u
+    private boolean reversible = false;
+    private int[] trail;
+    private int trailSize = 0;
+
+    public Graph(int[] ids, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inTargets) {
+        int n = ids.length;
+        this.ids = ids;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inTargets = inTargets;
+        this.addedOut = new int[n][];
+        this.addedIn = new int[n][];
+        this.addedOutCount = new int[n];
+        this.addedInCount = new int[n];
+        this.removedOut = new long[(outTargets.length + 63) >>> 6];
+        this.removedIn = new long[(inTargets.length + 63) >>> 6];
+        this.alive = new long[(n + 63) >>> 6];
+        this.outDegree = new int[n];
+        this.inDegree = new int[n];
+        this.updated = new boolean[n];
+        this.updatedStack = new int[Math.max(n, 1)];
+        for(int v = 0; v < n; v++) {
+            alive[v >>> 6] |= 1L << v;
+            outDegree[v] = outOffsets[v + 1] - outOffsets[v];
+            inDegree[v] = inOffsets[v + 1] - inOffsets[v];
+        }
+        this.nodeCount = n;
+        SplittableRandom random = new SplittableRandom(n);
+        this.removedKeys = new long[n];
+        this.bypassedKeys = new long[n];
+        for(int v = 0; v < n; v++) {
+            removedKeys[v] = random.nextLong();
+            bypassedKeys[v] = random.nextLong();
+        }
     }
 
-    public Map<Integer, Node> getNodeMap() {
-        return nodes;
+    private Graph(Graph graph) {
+        int n = graph.ids.length;
+        this.ids = graph.ids;
+        this.outOffsets = graph.outOffsets;
+        this.outTargets = graph.outTargets;
+        this.inOffsets = graph.inOffsets;
+        this.inTargets = graph.inTargets;
+        this.addedOut = new int[n][];
+        this.addedIn = new int[n][];
+        for(int v = 0; v < n; v++) {
+            if(graph.addedOutCount[v] > 0) addedOut[v] = Arrays.copyOf(graph.addedOut[v], graph.addedOutCount[v]);
+            if(graph.addedInCount[v] > 0) addedIn[v] = Arrays.copyOf(graph.addedIn[v], graph.addedInCount[v]);
+        }
+        this.addedOutCount = graph.addedOutCount.clone();
+        this.addedInCount = graph.addedInCount.clone();
+        this.removedOut = graph.removedOut.clone();
+        this.removedIn = graph.removedIn.clone();
+        this.removedArcCount = graph.removedArcCount;
+        this.alive = graph.alive.clone();
+        this.outDegree = graph.outDegree.clone();
+        this.inDegree = graph.inDegree.clone();
+        this.nodeCount = graph.nodeCount;
+        this.updated = graph.updated.clone();
+        this.updatedStack = graph.updatedStack.clone();
+        this.updatedCount = graph.updatedCount;
+        this.removedKeys = graph.removedKeys;
+        this.bypassedKeys = graph.bypassedKeys;
+        this.hash = graph.hash;
+    }
+
+    /**
+     * @return The number of dense indices (alive or removed). Scratch arrays indexed by node are sized with this.
+     */
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    /**
+     * @param v The dense index.
+     * @return The original node id.
+     */
+    public int getId(int v) {
+        return ids[v];
     }
 
-    public Node getNode(int id) {
-        Node node = nodes.get(id);
-        if(node == null) throw new RuntimeException("Couldn't find node with id " + id);
-        return node;
+    public boolean hasNode(int v) {
+        return (alive[v >>> 6] & (1L << v)) != 0;
     }
 
-    public boolean hasNode(int id) {
-        return nodes.get(id) != null;
+    /**
+     * @param from The first index to check.
+     * @return The smallest alive index >= from, or -1 if there is none.
+     */
+    public int nextNode(int from) {
+        int word = from >>> 6;
+        if(word >= alive.length) return -1;
+        long bits = alive[word] & (-1L << from);
+        while(true) {
+            if(bits != 0) return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if(++word == alive.length) return -1;
+            bits = alive[word];
+        }
     }
 
-    public List<Node> getOutNodes(Node node) {
-        return node.getOutIds().stream().map(this::getNode).collect(Collectors.toList());
+    public int[] getNodeIds() {
+        int[] nodeIds = new int[nodeCount];
+        int i = 0;
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) nodeIds[i++] = v;
+        return nodeIds;
     }
 
     public int getNodeCount() {
-        return nodes.size();
+        return nodeCount;
     }
 
     public int getEdgeCount() {
-        return nodes.values().stream().map(Node::getOutIdCount).mapToInt(Integer::valueOf).sum();
+        int edgeCount = 0;
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) edgeCount += outDegree[v];
+        return edgeCount;
+    }
+
+    public int getOutDegree(int v) {
+        return outDegree[v];
+    }
+
+    public int getInDegree(int v) {
+        return inDegree[v];
+    }
+
+    public int getCardinality(int v) {
+        return Math.min(outDegree[v], inDegree[v]);
+    }
+
+    /**
+     * @param v The dense index of an alive node.
+     * @return The alive out neighbors.
+     */
+    public int[] getOutIds(int v) {
+        int[] outIds = new int[outDegree[v]];
+        getOutIds(v, outIds);
+        return outIds;
+    }
+
+    /**
+     * Writes the alive out neighbors into the buffer without allocating.
+     * @param v The dense index of an alive node.
+     * @param buffer The buffer, must have space for the out degree.
+     * @return The number of written neighbors.
+     */
+    public int getOutIds(int v, int[] buffer) {
+        int count = 0;
+        for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+            if(hasNode(outTargets[i]) && !isRemoved(removedOut, i)) buffer[count++] = outTargets[i];
+        }
+        for(int i = 0; i < addedOutCount[v]; i++) {
+            if(isAlive(addedOut[v][i])) buffer[count++] = addedOut[v][i];
+        }
+        return count;
+    }
+
+    /**
+     * @param v The dense index of an alive node.
+     * @return The alive in neighbors.
+     */
+    public int[] getInIds(int v) {
+        int[] inIds = new int[inDegree[v]];
+        getInIds(v, inIds);
+        return inIds;
+    }
+
+    /**
+     * Writes the alive in neighbors into the buffer without allocating.
+     * @param v The dense index of an alive node.
+     * @param buffer The buffer, must have space for the in degree.
+     * @return The number of written neighbors.
+     */
+    public int getInIds(int v, int[] buffer) {
+        int count = 0;
+        for(int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+            if(hasNode(inTargets[i]) && !isRemoved(removedIn, i)) buffer[count++] = inTargets[i];
+        }
+        for(int i = 0; i < addedInCount[v]; i++) {
+            if(isAlive(addedIn[v][i])) buffer[count++] = addedIn[v][i];
+        }
+        return count;
+    }
+
+    /**
+     * @return True if both nodes are alive and the arc u -> w exists.
+     */
+    public boolean hasArc(int u, int w) {
+        if(!hasNode(u) || !hasNode(w)) return false;
+        int position = Arrays.binarySearch(outTargets, outOffsets[u], outOffsets[u + 1], w);
+        if(position >= 0 && !isRemoved(removedOut, position)) return true;
+        for(int i = 0; i < addedOutCount[u]; i++) {
+            if(addedOut[u][i] == w) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the arc at this position of the initial rows was removed.
+     */
+    private boolean isRemoved(long[] removed, int position) {
+        return removedArcCount > 0 && (removed[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * @return True if the entry of an added arc list is neither removed (negative) nor leads to a removed node.
+     */
+    private boolean isAlive(int added) {
+        return added >= 0 && hasNode(added);
+    }
+
+    /**
+     * @return True if every arc is part of a 2-cycle, then the graph is an undirected graph and the DFVS a vertex cover.
+     */
+    public boolean isBidirected() {
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) {
+            if(outDegree[v] != inDegree[v]) return false;
+        }
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) {
+            for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                int w = outTargets[i];
+                if(hasNode(w) && !isRemoved(removedOut, i) && !hasArc(w, v)) return false;
+            }
+            for(int i = 0; i < addedOutCount[v]; i++) {
+                int w = addedOut[v][i];
+                if(isAlive(w) && !hasArc(w, v)) return false;
+            }
+        }
+        return true;
     }
 
     public Cycle getFirstPairCycle() {
-        for (Node node : getNodes()) {
-            for(Integer outId: node.getOutIds()) {
-                if(node.getInIds().contains(outId)) {
-                    return new Cycle(node, getNode(outId));
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) {
+            for(int outId: getOutIds(v)) {
+                if(hasArc(outId, v)) {
+                    return new Cycle(v, outId);
                 }
             }
         } return null;
@@ -51,109 +298,304 @@ public class Graph {
     public List<Cycle> getPairCycles() {
         List<Cycle> cycles = new ArrayList<>();
         // Look for all cycles of size 2
-        for (Node node : getNodes()) {
-            for(Integer outId: node.getOutIds()) {
-                if(node.getInIds().contains(outId)) {
-                    cycles.add(new Cycle(node, getNode(outId)));
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) {
+            for(int outId: getOutIds(v)) {
+                if(hasArc(outId, v)) {
+                    cycles.add(new Cycle(v, outId));
                 }
             }
         }
         return cycles;
     }
 
-    public void resetBFS() {
-        nodes.values().forEach(node -> node.visitIndex = -1);
-        nodes.values().forEach(node -> node.parent = null);
+    /**
+     * Copies the mutable state, the initial rows are shared. The copy is not reversible.
+     */
+    public Graph copy() {
+        return new Graph(this);
+    }
+
+    /**
+     * Enables the reversible mode: all following node removals and added arcs are recorded on the trail.
+     */
+    public void setReversible() {
+        if(reversible) return;
+        reversible = true;
+        trail = new int[Math.max(ids.length, 16)];
+        trailSize = 0;
     }
 
-    public Graph copy() {
-        Graph copyGraph = new Graph();
+    /**
+     * @return The current position on the trail, to be passed to backtrack().
+     */
+    public int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Undoes all node removals and added arcs recorded after the mark, in reversed order.
+     * Runs in time proportional to the number of changes, not to the size of the graph.
+     * @param mark The position returned by mark().
+     */
+    public void backtrack(int mark) {
+        while(trailSize > mark) {
+            int entry = trail[--trailSize];
+            if(entry >= 2 * ids.length) restoreArc(entry - 2 * ids.length, trail[--trailSize]);
+            else if(entry >= ids.length) hash ^= bypassedKeys[entry - ids.length];
+            else if(entry >= 0) undoRemoveNode(entry);
+            else undoAddArc(~entry);
+        }
+    }
+
+    /**
+     * @param mark The position returned by mark().
+     * @return The nodes removed since the mark (also the bypassed ones).
+     */
+    public int[] getRemovedNodes(int mark) {
+        int[] removed = new int[trailSize - mark];
+        int count = 0;
+        for(int i = trailSize - 1; i >= mark; i--) {
+            int entry = trail[i];
+            if(entry >= 2 * ids.length) i--; // Removed arc, its target is the entry before
+            else if(entry >= 0 && entry < ids.length) removed[count++] = entry;
+        }
+        return Arrays.copyOf(removed, count);
+    }
 
-        for (Node node : getNodes()) {
-            Node copyNode = node.copy();
-            copyGraph.nodes.put(copyNode.id, copyNode);
+    /**
+     * @param mark The position returned by mark().
+     * @return The tails of the arcs added since the mark, may contain a node more than once.
+     */
+    public int[] getAddedArcTails(int mark) {
+        int[] tails = new int[trailSize - mark];
+        int count = 0;
+        for(int i = trailSize - 1; i >= mark; i--) {
+            int entry = trail[i];
+            if(entry >= 2 * ids.length) i--; // Removed arc, its target is the entry before
+            else if(entry < 0) tails[count++] = ~entry;
+        }
+        return Arrays.copyOf(tails, count);
+    }
+
+    private void record(int entry) {
+        if(trailSize == trail.length) trail = Arrays.copyOf(trail, trailSize * 2);
+        trail[trailSize++] = entry;
+    }
+
+    private void undoRemoveNode(int v) {
+        // The degrees of v were frozen while it was removed, only the alive neighbors have to be updated
+        for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++) if(hasNode(outTargets[i]) && !isRemoved(removedOut, i)) inDegree[outTargets[i]]++;
+        for(int i = 0; i < addedOutCount[v]; i++) if(isAlive(addedOut[v][i])) inDegree[addedOut[v][i]]++;
+        for(int i = inOffsets[v]; i < inOffsets[v + 1]; i++) if(hasNode(inTargets[i]) && !isRemoved(removedIn, i)) outDegree[inTargets[i]]++;
+        for(int i = 0; i < addedInCount[v]; i++) if(isAlive(addedIn[v][i])) outDegree[addedIn[v][i]]++;
+        alive[v >>> 6] |= 1L << v;
+        nodeCount++;
+        hash ^= removedKeys[v];
+    }
+
+    private void undoAddArc(int u) {
+        int w = addedOut[u][--addedOutCount[u]];
+        addedInCount[w]--;
+        outDegree[u]--;
+        inDegree[w]--;
+    }
+
+    public void setUpdated(int v, boolean value) {
+        if(value && !updated[v]) {
+            if(updatedCount == updatedStack.length) updatedStack = Arrays.copyOf(updatedStack, updatedCount * 2);
+            updatedStack[updatedCount++] = v;
         }
-        return copyGraph;
+        updated[v] = value;
     }
 
     public void setAllNodesUpdated() {
-        nodes.values().forEach(node -> node.updated = true);
+        for(int v = nextNode(0); v >= 0; v = nextNode(v + 1)) setUpdated(v, true);
     }
 
-    public List<Integer> getUpdatedNodeIds() {
-        return nodes.values().stream().filter(node -> node.updated).map(node -> node.id).collect(Collectors.toList());
+    /**
+     * Returns the alive nodes marked as updated since the last call. The flags stay set until they are reset by the caller.
+     */
+    public int[] getUpdatedNodeIds() {
+        int count = 0;
+        int[] updatedNodeIds = new int[updatedCount];
+        for(int i = 0; i < updatedCount; i++) {
+            int v = updatedStack[i];
+            if(updated[v] && hasNode(v)) updatedNodeIds[count++] = v;
+        }
+        updatedCount = 0;
+        return (count == updatedNodeIds.length) ? updatedNodeIds : Arrays.copyOf(updatedNodeIds, count);
     }
 
     /**
-     * Fully removes a node from the graph. Also removes the node id from the neighbors inIds and outIds.
-     * @param nodeId The node id.
+     * Fully removes a node from the graph. Also updates the degrees of the neighbors and marks them as updated.
+     * @param v The dense index.
      */
-    public void removeNode(Integer nodeId) {
-        Node node = nodes.get(nodeId);
-        for(Integer outId: node.getOutIds()) {
-            Node out = getNode(outId);
-            out.removeInId(nodeId);
-            out.updated = true;
+    public void removeNode(int v) {
+        alive[v >>> 6] &= ~(1L << v);
+        updated[v] = false;
+        nodeCount--;
+        hash ^= removedKeys[v];
+        for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++) if(!isRemoved(removedOut, i)) removeInArc(outTargets[i]);
+        for(int i = 0; i < addedOutCount[v]; i++) if(addedOut[v][i] >= 0) removeInArc(addedOut[v][i]);
+        for(int i = inOffsets[v]; i < inOffsets[v + 1]; i++) if(!isRemoved(removedIn, i)) removeOutArc(inTargets[i]);
+        for(int i = 0; i < addedInCount[v]; i++) if(addedIn[v][i] >= 0) removeOutArc(addedIn[v][i]);
+        if(reversible) record(v);
+    }
+
+    private void removeInArc(int out) {
+        if(hasNode(out)) {
+            inDegree[out]--;
+            setUpdated(out, true);
         }
-        for(Integer inId: node.getInIds()) {
-            Node in = getNode(inId);
-            in.removeOutId(nodeId);
-            in.updated = true;
+    }
+
+    private void removeOutArc(int in) {
+        if(hasNode(in)) {
+            outDegree[in]--;
+            setUpdated(in, true);
+        }
+    }
+
+    /**
+     * Adds a removed node back into the graph, together with all its initial and added arcs to alive nodes.
+     * Not recorded on the trail, only used on graphs which are not reversible.
+     * @param v The dense index.
+     */
+    public void restoreNode(int v) {
+        if(hasNode(v)) return;
+        alive[v >>> 6] |= 1L << v;
+        nodeCount++;
+        hash ^= removedKeys[v];
+        outDegree[v] = 0;
+        inDegree[v] = 0;
+        for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++) if(!isRemoved(removedOut, i)) restoreOutArc(v, outTargets[i]);
+        for(int i = 0; i < addedOutCount[v]; i++) if(addedOut[v][i] >= 0) restoreOutArc(v, addedOut[v][i]);
+        for(int i = inOffsets[v]; i < inOffsets[v + 1]; i++) if(!isRemoved(removedIn, i)) restoreInArc(v, inTargets[i]);
+        for(int i = 0; i < addedInCount[v]; i++) if(addedIn[v][i] >= 0) restoreInArc(v, addedIn[v][i]);
+    }
+
+    private void restoreOutArc(int v, int out) {
+        if(hasNode(out)) {
+            outDegree[v]++;
+            if(out != v) inDegree[out]++;
+        }
+    }
+
+    private void restoreInArc(int v, int in) {
+        if(hasNode(in)) {
+            inDegree[v]++;
+            if(in != v) outDegree[in]++;
         }
-        nodes.remove(nodeId);
     }
 
     public void removeForbiddenNodes(List<Integer> forbiddenNodeIds) {
         for(Integer forbiddenId: forbiddenNodeIds) {
-            removeForbiddenNode(forbiddenId);
+            bypassNode(forbiddenId);
         }
     }
 
-    private void removeForbiddenNode(Integer forbiddenId) {
-        Node forbidden = getNode(forbiddenId);
-        for(Node node: getNodes()) {
-            if(node.getOutIds().contains(forbiddenId)) {
-                for(Node out: getOutNodes(forbidden)) {
-                    out.addInId(node.id);
-                    node.addOutId(out.id);
-                }
+    /**
+     * Removes a node that must not be deleted by bypassing it: every in neighbor gets an arc to every out neighbor.
+     * Also used by the chain rules, where the node has only one in or out neighbor.
+     * @param v The dense index.
+     */
+    public void bypassNode(int v) {
+        int[] outIds = getOutIds(v);
+        for(int inId: getInIds(v)) {
+            for(int outId: outIds) {
+                addArc(inId, outId);
             }
         }
-        removeNode(forbidden.id);
+        removeNode(v);
+        hash ^= bypassedKeys[v];
+        if(reversible) record(ids.length + v);
     }
 
-    public void addInitialNode(Node initialNode) {
-        Node add = new Node(initialNode.id);
-        for(Integer outId: initialNode.getOutIds()) {
-            if(hasNode(outId)) {
-                Node out = getNode(outId);
-                add.addOutId(outId);
-                out.addInId(add.id);
-            }
+    /**
+     * @return The Zobrist hash of the removed and bypassed nodes.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Adds the arc u -> w between two alive nodes, if it doesn't exist yet.
+     * @return True if the arc was added.
+     */
+    public boolean addArc(int u, int w) {
+        if(hasArc(u, w)) return false;
+        if(addedOut[u] == null) addedOut[u] = new int[4];
+        else if(addedOutCount[u] == addedOut[u].length) addedOut[u] = Arrays.copyOf(addedOut[u], addedOutCount[u] * 2);
+        if(addedIn[w] == null) addedIn[w] = new int[4];
+        else if(addedInCount[w] == addedIn[w].length) addedIn[w] = Arrays.copyOf(addedIn[w], addedInCount[w] * 2);
+        addedOut[u][addedOutCount[u]++] = w;
+        addedIn[w][addedInCount[w]++] = u;
+        outDegree[u]++;
+        inDegree[w]++;
+        if(reversible) record(~u);
+        return true;
+    }
+
+    /**
+     * Removes the arc u -> w between two alive nodes and marks both nodes as updated.
+     * Used by the reduction rules for arcs which are on no cycle that matters.
+     */
+    public void removeArc(int u, int w) {
+        int position = Arrays.binarySearch(outTargets, outOffsets[u], outOffsets[u + 1], w);
+        if(position >= 0 && !isRemoved(removedOut, position)) {
+            removedOut[position >>> 6] |= 1L << position;
+            int inPosition = Arrays.binarySearch(inTargets, inOffsets[w], inOffsets[w + 1], u);
+            removedIn[inPosition >>> 6] |= 1L << inPosition;
+        } else {
+            setAdded(addedOut[u], addedOutCount[u], w, ~w);
+            setAdded(addedIn[w], addedInCount[w], u, ~u);
         }
-        for(Integer inId: initialNode.getInIds()) {
-            if(hasNode(inId)) {
-                Node in = getNode(inId);
-                add.addInId(inId);
-                in.addOutId(add.id);
-            }
+        removedArcCount++;
+        outDegree[u]--;
+        inDegree[w]--;
+        hash ^= getArcKey(u, w);
+        setUpdated(u, true);
+        setUpdated(w, true);
+        if(reversible) {
+            record(w);
+            record(2 * ids.length + u);
         }
-        nodes.put(add.id, add);
     }
 
-    public void addArc(Integer nodeId1, Integer nodeId2) {
-
-        Node node1 = nodes.get(nodeId1);
-        if(node1 == null) {
-            node1 = new Node(nodeId1);
-            nodes.put(nodeId1, node1);
+    /**
+     * Undoes the last removal of the arc u -> w. A removed added arc is restored before the initial one,
+     * because the arc can only be added after the initial one was removed.
+     */
+    private void restoreArc(int u, int w) {
+        if(!setAdded(addedOut[u], addedOutCount[u], ~w, w)) {
+            int position = Arrays.binarySearch(outTargets, outOffsets[u], outOffsets[u + 1], w);
+            removedOut[position >>> 6] &= ~(1L << position);
+            int inPosition = Arrays.binarySearch(inTargets, inOffsets[w], inOffsets[w + 1], u);
+            removedIn[inPosition >>> 6] &= ~(1L << inPosition);
+        } else {
+            setAdded(addedIn[w], addedInCount[w], ~u, u);
         }
-        Node node2 = nodes.get(nodeId2);
-        if(node2 == null) {
-            node2 = new Node(nodeId2);
-            nodes.put(nodeId2, node2);
+        removedArcCount--;
+        outDegree[u]++;
+        inDegree[w]++;
+        hash ^= getArcKey(u, w);
+    }
+
+    /**
+     * Replaces the last occurrence of the entry in the added arc list.
+     * @return True if the entry was found.
+     */
+    private static boolean setAdded(int[] added, int count, int entry, int value) {
+        for(int i = count - 1; i >= 0; i--) {
+            if(added[i] == entry) {
+                added[i] = value;
+                return true;
+            }
         }
-        node1.addOutId(nodeId2);
-        node2.addInId(nodeId1);
+        return false;
+    }
+
+    private long getArcKey(int u, int w) {
+        return Long.rotateLeft(removedKeys[u], 17) ^ bypassedKeys[w] * 0x9E3779B97F4A7C15L;
     }
 }
@@ -0,0 +1,96 @@
+package program.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GraphBuilder {
+
+    // Original id -> dense index, in order of first appearance
+    private final Map<Integer, Integer> indices = new HashMap<>();
+    private int[] ids = new int[16];
+    private int nodeCount = 0;
+
+    // Arc list in dense indices
+    private int[] sources = new int[16];
+    private int[] targets = new int[16];
+    private int arcCount = 0;
+
+    public void addArc(int nodeId1, int nodeId2) {
+        int source = getIndex(nodeId1);
+        int target = getIndex(nodeId2);
+        if(arcCount == sources.length) {
+            sources = Arrays.copyOf(sources, arcCount * 2);
+            targets = Arrays.copyOf(targets, arcCount * 2);
+        }
+        sources[arcCount] = source;
+        targets[arcCount] = target;
+        arcCount++;
+    }
+
+    private int getIndex(int nodeId) {
+        Integer index = indices.get(nodeId);
+        if(index == null) {
+            index = nodeCount;
+            indices.put(nodeId, index);
+            if(nodeCount == ids.length) ids = Arrays.copyOf(ids, nodeCount * 2);
+            ids[nodeCount++] = nodeId;
+        }
+        return index;
+    }
+
+    /**
+     * Builds the compressed sparse row graph. Duplicate arcs are removed by sorting each row.
+     * @return The graph.
+     */
+    public Graph build() {
+        return build(Arrays.copyOf(ids, nodeCount), sources, targets, arcCount);
+    }
+
+    /**
+     * Builds the compressed sparse row graph from an arc list in dense indices.
+     * @param ids The original id of every dense index.
+     * @param sources The arc sources.
+     * @param targets The arc targets.
+     * @param arcCount The number of arcs, may contain duplicates.
+     * @return The graph.
+     */
+    public static Graph build(int[] ids, int[] sources, int[] targets, int arcCount) {
+        int n = ids.length;
+
+        // First pass: count out degrees and fill the rows
+        int[] outOffsets = new int[n + 1];
+        for(int i = 0; i < arcCount; i++) outOffsets[sources[i] + 1]++;
+        for(int v = 0; v < n; v++) outOffsets[v + 1] += outOffsets[v];
+        int[] outTargets = new int[arcCount];
+        int[] fill = Arrays.copyOf(outOffsets, n);
+        for(int i = 0; i < arcCount; i++) outTargets[fill[sources[i]]++] = targets[i];
+
+        // Second pass: sort every row and drop duplicates in place
+        int write = 0;
+        for(int v = 0; v < n; v++) {
+            int start = outOffsets[v];
+            int end = outOffsets[v + 1];
+            Arrays.sort(outTargets, start, end);
+            outOffsets[v] = write;
+            for(int i = start; i < end; i++) {
+                if(i == start || outTargets[i] != outTargets[i - 1]) outTargets[write++] = outTargets[i];
+            }
+        }
+        outOffsets[n] = write;
+        if(write < outTargets.length) outTargets = Arrays.copyOf(outTargets, write);
+
+        // Transpose for the in arcs, rows are sorted because sources are visited in order
+        int[] inOffsets = new int[n + 1];
+        for(int target: outTargets) inOffsets[target + 1]++;
+        for(int v = 0; v < n; v++) inOffsets[v + 1] += inOffsets[v];
+        int[] inTargets = new int[write];
+        fill = Arrays.copyOf(inOffsets, n);
+        for(int v = 0; v < n; v++) {
+            for(int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                inTargets[fill[outTargets[i]]++] = v;
+            }
+        }
+        return new Graph(ids, outOffsets, outTargets, inOffsets, inTargets);
+    }
+}
@@ -12,6 +12,7 @@ public class Instance {
 
     // Algorithm variables
     public List<Graph> subGraphs;
+    public List<Integer> preprocessedS; // Original ids of the nodes removed by the initial reductions, null before the preprocessing
     public List<Integer> S = new ArrayList<>(); // Result
 
     // Log variables
@@ -22,6 +23,7 @@ public class Instance {
     public float[] averageCycleSize;
     public int[] recursiveStepsPerK;
     public int solvedK = 0;
+    public List<long[]> solutionSizes = new ArrayList<>(); // (millis, k) whenever the best solution improved
 
     public Instance(String NAME, Graph graph, int OPTIMAL_K) {
         this.NAME = NAME;
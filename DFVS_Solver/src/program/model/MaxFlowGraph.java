@@ -1,32 +1,215 @@
 package program.model;
 
-import java.util.*;
+import java.util.Arrays;
 
+/**
+ * Flow network with unit capacities in compressed sparse row format. Every arc is stored together with its reverse arc
+ * of the residual network, the max flow is computed with Dinic's algorithm.
+ * The arcs changed by a flow are remembered, so reset() restores the capacities without touching the whole network
+ * and the network can be reused for many flows.
+ */
 public class MaxFlowGraph {
 
-    private Map<String, MaxFlowNode> nodes = new LinkedHashMap<>();
+    private final int nodeCount;
 
-    public void addArc(String nodeLabel1, String nodeLabel2) {
+    // Arcs & reverse arcs, rows by tail node
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reverse; // Position of the reverse arc
+    private final int[] initialCapacities;
+    private final int[] capacities;
 
-        MaxFlowNode node1 = nodes.get(nodeLabel1);
-        if(node1 == null) {
-            node1 = new MaxFlowNode(nodeLabel1);
-            nodes.put(nodeLabel1, node1);
+    // Arcs changed since the last reset (may contain duplicates)
+    private int[] changed;
+    private int changedCount = 0;
+
+    // Dinic: level graph, current arc per node & the path of the search
+    private final int[] levels;
+    private final int[] current;
+    private final int[] queue;
+    private final int[] path;
+
+    /**
+     * @param nodeCount The number of nodes.
+     * @param sources The tail of every arc.
+     * @param targets The head of every arc.
+     * @param arcCount The number of arcs, each gets the capacity 1.
+     */
+    public MaxFlowGraph(int nodeCount, int[] sources, int[] targets, int arcCount) {
+        this.nodeCount = nodeCount;
+        this.offsets = new int[nodeCount + 1];
+        for(int i = 0; i < arcCount; i++) {
+            offsets[sources[i] + 1]++;
+            offsets[targets[i] + 1]++;
         }
-        MaxFlowNode node2 = nodes.get(nodeLabel2);
-        if(node2 == null) {
-            node2 = new MaxFlowNode(nodeLabel2);
-            nodes.put(nodeLabel2, node2);
+        for(int v = 0; v < nodeCount; v++) offsets[v + 1] += offsets[v];
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        this.targets = new int[2 * arcCount];
+        this.reverse = new int[2 * arcCount];
+        this.initialCapacities = new int[2 * arcCount];
+        for(int i = 0; i < arcCount; i++) {
+            int forward = next[sources[i]]++;
+            int backward = next[targets[i]]++;
+            this.targets[forward] = targets[i];
+            this.targets[backward] = sources[i];
+            reverse[forward] = backward;
+            reverse[backward] = forward;
+            initialCapacities[forward] = 1;
         }
-        node1.addOutId(nodeLabel2);
-        node2.addInId(nodeLabel1);
+        this.capacities = initialCapacities.clone();
+        this.changed = new int[16];
+        this.levels = new int[nodeCount];
+        this.current = new int[nodeCount];
+        this.queue = new int[nodeCount];
+        this.path = new int[nodeCount];
+    }
+
+    /**
+     * Workspace for another thread: shares the arcs, but has its own capacities & search arrays.
+     */
+    private MaxFlowGraph(MaxFlowGraph network) {
+        this.nodeCount = network.nodeCount;
+        this.offsets = network.offsets;
+        this.targets = network.targets;
+        this.reverse = network.reverse;
+        this.initialCapacities = network.initialCapacities.clone();
+        this.capacities = network.capacities.clone();
+        this.changed = network.changed.clone();
+        this.changedCount = network.changedCount;
+        this.levels = new int[nodeCount];
+        this.current = new int[nodeCount];
+        this.queue = new int[nodeCount];
+        this.path = new int[nodeCount];
     }
 
-    public List<MaxFlowNode> getNodes() {
-        return nodes.values().stream().toList();
+    public MaxFlowGraph copy() {
+        return new MaxFlowGraph(this);
     }
 
     public int getNodeCount() {
-        return nodes.size();
+        return nodeCount;
+    }
+
+    /**
+     * @return The position of the arc u -> w (not a reverse arc), or -1 if there is none.
+     */
+    public int getArc(int u, int w) {
+        for(int i = offsets[u]; i < offsets[u + 1]; i++) {
+            if(targets[i] == w && initialCapacities[i] > 0) return i;
+        }
+        return -1;
+    }
+
+    public int getTail(int arc) {
+        return targets[reverse[arc]];
+    }
+
+    public int getHead(int arc) {
+        return targets[arc];
+    }
+
+    /**
+     * @return The arcs changed since the last reset, may contain an arc more than once.
+     */
+    public int[] getChangedArcs() {
+        return Arrays.copyOf(changed, changedCount);
+    }
+
+    /**
+     * @return True if the current flow uses the arc.
+     */
+    public boolean hasFlow(int arc) {
+        return capacities[arc] < initialCapacities[arc];
+    }
+
+    /**
+     * Sets the capacity of an arc, also for the following resets.
+     */
+    public void setCapacity(int arc, int capacity) {
+        initialCapacities[arc] = capacity;
+        capacities[arc] = capacity;
+    }
+
+    /**
+     * Restores the capacities of the arcs changed by the flows since the last reset.
+     */
+    public void reset() {
+        for(int i = 0; i < changedCount; i++) capacities[changed[i]] = initialCapacities[changed[i]];
+        changedCount = 0;
+    }
+
+    /**
+     * Dinic's algorithm: blocking flows on the level graph of the shortest augmenting paths, with unit capacities every
+     * path carries 1. The flow stays in the network until reset().
+     * @param limit The search stops as soon as the flow reaches this value.
+     * @return The max flow from source to sink, at most the limit.
+     */
+    public int getMaxFlow(int source, int sink, int limit) {
+        int flow = 0;
+        while(flow < limit && setLevels(source, sink)) {
+            System.arraycopy(offsets, 0, current, 0, nodeCount);
+            while(flow < limit && augment(source, sink)) flow++;
+        }
+        return flow;
+    }
+
+    /**
+     * BFS from the source over the arcs with residual capacity.
+     * @return True if the sink was reached.
+     */
+    private boolean setLevels(int source, int sink) {
+        Arrays.fill(levels, -1);
+        levels[source] = 0;
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        while(head < tail) {
+            int v = queue[head++];
+            for(int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int w = targets[i];
+                if(capacities[i] > 0 && levels[w] == -1) {
+                    levels[w] = levels[v] + 1;
+                    if(w == sink) return true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds one path in the level graph with an explicit stack, the dead ends are cut off by their current arc.
+     * @return True if a path was found and its flow added.
+     */
+    private boolean augment(int source, int sink) {
+        int depth = 0;
+        int v = source;
+        while(v != sink) {
+            int arc = current[v];
+            while(arc < offsets[v + 1] && (capacities[arc] == 0 || levels[targets[arc]] != levels[v] + 1)) arc++;
+            current[v] = arc;
+            if(arc < offsets[v + 1]) {
+                path[depth++] = arc;
+                v = targets[arc];
+            } else {
+                // Dead end, retreat and skip the arc leading here
+                levels[v] = -1;
+                if(depth == 0) return false;
+                v = targets[reverse[path[--depth]]];
+                current[v]++;
+            }
+        }
+        for(int i = 0; i < depth; i++) {
+            int arc = path[i];
+            capacities[arc]--;
+            capacities[reverse[arc]]++;
+            remember(arc);
+            remember(reverse[arc]);
+        }
+        return true;
+    }
+
+    private void remember(int arc) {
+        if(changedCount == changed.length) changed = Arrays.copyOf(changed, changedCount * 2);
+        changed[changedCount++] = arc;
     }
 }
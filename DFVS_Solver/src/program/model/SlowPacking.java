@@ -23,14 +23,13 @@ public class SlowPacking {
 
     private void upgradeFullyConnected(Cycle pair) {
 
-        Node a = pair.get(0);
+        int a = pair.get(0);
         boolean upgrade = true;
         while(upgrade) {
             upgrade = false;
-            for(Integer outId: a.getOutIds()) {
-                if(pair.isFullyConnected(outId)) {
-                    Node newNode = packingGraph.getNode(outId);
-                    pair.add(newNode);
+            for(int outId: packingGraph.getOutIds(a)) {
+                if(pair.isFullyConnected(outId, packingGraph)) {
+                    pair.add(outId);
                     pair.setK(pair.getK() + 1);
                     upgrade = true;
                     break;
@@ -41,18 +40,16 @@ public class SlowPacking {
 
     private void upgradeK2Penta(Cycle triangle) {
         for(int i = 0; i < 3; i++) {
-            Node a = triangle.get(i);
-            Node b = triangle.get((i + 1) % 3);
-            Node c = triangle.get((i + 2) % 3);
+            int a = triangle.get(i);
+            int b = triangle.get((i + 1) % 3);
+            int c = triangle.get((i + 2) % 3);
             // Due to the structure of Light BFS, the cycle goes c -> b -> a
 
-            for (Integer dId : a.getOutIds()) {
-                if (b.getInIds().contains(dId)) { // a -> d -> b exists
-                    if(c.getOutIds().contains(dId)) {
-                        Node d = packingGraph.getNode(dId);
-                        for(Integer eId: d.getOutIds()) {
-                            if(c.getInIds().contains(eId)) {
-                                Node e = packingGraph.getNode(eId);
+            for (int d : packingGraph.getOutIds(a)) {
+                if (packingGraph.hasArc(d, b)) { // a -> d -> b exists
+                    if(packingGraph.hasArc(c, d)) {
+                        for(int e: packingGraph.getOutIds(d)) {
+                            if(packingGraph.hasArc(e, c)) {
                                 triangle.add(d);
                                 triangle.add(e);
                                 triangle.setK(2);
@@ -60,11 +57,9 @@ public class SlowPacking {
                             }
                         }
                     }
-                    if(c.getInIds().contains(dId)) {
-                        Node d = packingGraph.getNode(dId);
-                        for(Integer eId: d.getInIds()) {
-                            if(c.getOutIds().contains(eId)) {
-                                Node e = packingGraph.getNode(eId);
+                    if(packingGraph.hasArc(d, c)) {
+                        for(int e: packingGraph.getInIds(d)) {
+                            if(packingGraph.hasArc(c, e)) {
                                 triangle.add(d);
                                 triangle.add(e);
                                 triangle.setK(2);
@@ -85,19 +80,19 @@ public class SlowPacking {
             // Look for fully connected triangles, quads etc.
             upgradeFullyConnected(pair);
 
-            for (Node node : pair.getNodes()) {
-                packingGraph.removeNode(node.id);
+            for (int node : pair.getNodes()) {
+                packingGraph.removeNode(node);
             }
             cycles.add(pair);
         }
 
-        while(!DAG.isDAGFast(packingGraph)) {
+        while(!DAG.isDAG(packingGraph)) {
             Cycle cycle = LightBFS.findShortestCycle(packingGraph);
 
             if(cycle.size() == 3) upgradeK2Penta(cycle);
 
-            for (Node node : cycle.getNodes()) {
-                packingGraph.removeNode(node.id);
+            for (int node : cycle.getNodes()) {
+                packingGraph.removeNode(node);
             }
             cycles.add(cycle);
         }
@@ -0,0 +1,279 @@
+package program.utils;
+
+import program.model.Graph;
+import program.model.GraphBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Parses an edge list ("source target" per line, lines starting with '#' or '%' are comments) directly from bytes.
+ * Further columns after source & target (e.g. the weights of .mtx files) are ignored.
+ * The bytes can come in several chunks, a line may be split between two chunks. The original ids are mapped to dense
+ * indices in order of first appearance with a primitive hash map, the arcs are collected in int arrays, so there is
+ * no allocation per line or arc.
+ */
+public class EdgeListParser {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MAX_TENTH = Integer.MAX_VALUE / 10; // Ids above it overflow with one more digit
+
+    private final String name;
+
+    // Original id -> dense index + 1 (0 = empty slot), open addressing with linear probing
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int[] ids;
+    private int nodeCount = 0;
+
+    // Arc list in dense indices
+    private int[] sources;
+    private int[] targets;
+    private int arcCount = 0;
+
+    // Scan only: the arcs are counted & the ids are mapped, but no arcs are kept
+    private final boolean scanOnly;
+
+    // State of the current line
+    private final int[] fields = new int[2];
+    private int fieldCount = 0;
+    private int number = 0;
+    private boolean hasDigits = false;
+    private boolean negative = false;
+    private boolean comment = false; // Skips the rest of the line, also set for the columns after source & target
+    private boolean lineStart = true;
+
+    /**
+     * @param name The name of the input, for error messages.
+     * @param expectedArcs The expected number of arcs, the arrays grow if there are more.
+     */
+    public EdgeListParser(String name, int expectedArcs) {
+        this(name, expectedArcs, false);
+    }
+
+    private EdgeListParser(String name, int expectedArcs, boolean scanOnly) {
+        this.name = name;
+        this.scanOnly = scanOnly;
+        int capacity = Integer.highestOneBit(Math.max(expectedArcs, 8)) << 2;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        ids = new int[Math.max(expectedArcs, 16)];
+        sources = new int[Math.max(expectedArcs, 16)];
+        targets = new int[Math.max(expectedArcs, 16)];
+    }
+
+    /**
+     * Maps the file into memory and parses it. The first pass counts the lines to size the arrays,
+     * the second one parses them. Both passes copy the mapped bytes in chunks, scanning a byte array is faster.
+     * @param path The path of the file.
+     * @return The graph.
+     */
+    public static Graph parseFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            EdgeListParser parser = new EdgeListParser(path.getFileName().toString(), countLines(buffer));
+            parser.parse(buffer);
+            return parser.build();
+        }
+    }
+
+    /**
+     * Counts the lines of the file without parsing them, e.g. to estimate the number of arcs.
+     */
+    public static int countLines(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return countLines(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Quick scan of the file for the size of the graph without building it: the ids are only mapped to count them and
+     * no arcs are kept.
+     * @return The number of arcs and the number of distinct node ids.
+     */
+    public static int[] scan(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            EdgeListParser parser = new EdgeListParser(path.getFileName().toString(), 0, true);
+            parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            parser.endLine();
+            return new int[] {parser.arcCount, parser.nodeCount};
+        }
+    }
+
+    private static int countLines(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int lines = 1;
+        while(view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            for(int i = 0; i < length; i++) {
+                if(chunk[i] == '\n') lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Reads the stream in chunks and parses them while reading, so the input is never held as a whole.
+     * @param stream The stream, read until its end but not closed.
+     * @param name The name of the input, for error messages.
+     * @return The graph.
+     */
+    public static Graph parseStream(InputStream stream, String name) throws IOException {
+        EdgeListParser parser = new EdgeListParser(name, CHUNK_SIZE);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length;
+        while((length = stream.read(chunk)) != -1) {
+            parser.parse(chunk, 0, length);
+        }
+        return parser.build();
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer, the position of the buffer is not changed.
+     * An incomplete last line is continued by the next call.
+     */
+    public void parse(ByteBuffer buffer) {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ByteBuffer view = buffer.duplicate();
+        while(view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            parse(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Parses the bytes from start to end of the array. An incomplete last line is continued by the next call.
+     * The number being read is kept in locals, only the line ends and separators touch the fields.
+     */
+    public void parse(byte[] bytes, int start, int end) {
+        int number = this.number;
+        boolean hasDigits = this.hasDigits;
+        for(int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if(b >= '0' && b <= '9' && !comment) {
+                // Ids beyond the int range are rejected like by Integer.parseInt, the later columns are ignored anyway
+                if(number >= MAX_TENTH && fieldCount < 2 && (number > MAX_TENTH || b - '0' > (negative ? 8 : 7))) {
+                    throw new RuntimeException("Couldn't parse file '" + name + "' to Integer");
+                }
+                number = number * 10 + (b - '0');
+                hasDigits = true;
+                lineStart = false;
+                continue;
+            }
+            this.number = number;
+            this.hasDigits = hasDigits;
+            if(b == '\n') {
+                endLine();
+            } else if(comment) {
+                continue;
+            } else if(b == ' ' || b == '\t' || b == '\r') {
+                endNumber();
+            } else if(lineStart && (b == '#' || b == '%')) {
+                comment = true;
+                lineStart = false;
+            } else if(b == '-' && !hasDigits && !negative) {
+                negative = true;
+                lineStart = false;
+            } else if(fieldCount >= 2) {
+                comment = true;
+            } else {
+                throw new RuntimeException("Couldn't parse file '" + name + "' to Integer");
+            }
+            number = this.number;
+            hasDigits = this.hasDigits;
+        }
+        this.number = number;
+        this.hasDigits = hasDigits;
+    }
+
+    private void endNumber() {
+        if(hasDigits) {
+            if(fieldCount < 2) fields[fieldCount] = negative ? -number : number;
+            fieldCount++;
+        } else if(negative) {
+            throw new RuntimeException("Couldn't parse file '" + name + "' to Integer");
+        }
+        number = 0;
+        hasDigits = false;
+        negative = false;
+    }
+
+    private void endLine() {
+        endNumber();
+        if(fieldCount > 0) {
+            if(fieldCount < 2) throw new RuntimeException("Couldn't parse file '" + name + "' to Integer");
+            int source = getIndex(fields[0]);
+            int target = getIndex(fields[1]);
+            if(scanOnly) arcCount++;
+            else addArc(source, target);
+        }
+        fieldCount = 0;
+        comment = false;
+        lineStart = true;
+    }
+
+    private void addArc(int source, int target) {
+        if(arcCount == sources.length) {
+            sources = Arrays.copyOf(sources, arcCount * 2);
+            targets = Arrays.copyOf(targets, arcCount * 2);
+        }
+        sources[arcCount] = source;
+        targets[arcCount] = target;
+        arcCount++;
+    }
+
+    private int getIndex(int id) {
+        int slot = mix(id) & mask;
+        while(values[slot] != 0) {
+            if(keys[slot] == id) return values[slot] - 1;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        values[slot] = nodeCount + 1;
+        if(nodeCount == ids.length) ids = Arrays.copyOf(ids, nodeCount * 2);
+        ids[nodeCount] = id;
+        int index = nodeCount++;
+        if(nodeCount * 2 > keys.length) grow();
+        return index;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldValues[i] == 0) continue;
+            int slot = mix(oldKeys[i]) & mask;
+            while(values[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Finishes the last line and builds the compressed sparse row graph, duplicate arcs are removed by sorting.
+     * @return The graph.
+     */
+    public Graph build() {
+        endLine();
+        return GraphBuilder.build(Arrays.copyOf(ids, nodeCount), sources, targets, arcCount);
+    }
+}
@@ -0,0 +1,219 @@
+package program.utils;
+
+import program.algo.Preprocessing;
+import program.log.Log;
+import program.model.Graph;
+import program.model.Instance;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary cache of preprocessed instances, stored next to the input file with the suffix ".dfvs".
+ * It holds the graph in compressed sparse row format (with the original ids), the nodes removed by the initial
+ * reductions, the cyclic sub graphs of the kernel and the optimal k. Layout (big endian):
+ * magic, version, size, modification time & CRC32 of the input file, optimal k, graph, removed node ids, sub graphs,
+ * CRC32 of all before.
+ * A graph is stored as n, m, ids, out offsets, out targets, in offsets, in targets.
+ * The input is unchanged if size & modification time match, its checksum is only computed if just the time differs
+ * (e.g. after a copy). Then the new time is stored, so the next load skips the checksum again.
+ * A cache with another version, input or optimal k is stale and gets rebuilt.
+ */
+public abstract class GraphCache {
+
+    public static final String SUFFIX = ".dfvs";
+
+    private static final int MAGIC = 0x44465653; // "DFVS"
+    private static final int VERSION = 3;
+
+    /**
+     * Loads the preprocessed instance from the cache, or parses & preprocesses the input and writes the cache.
+     * @param path The path of the input file.
+     * @param optimalK The optimal k of the instance, the cache is rebuilt if it holds another one.
+     * @return The preprocessed instance.
+     */
+    public static Instance load(Path path, int optimalK) {
+        String name = path.getFileName().toString();
+        Path cachePath = Paths.get(path + SUFFIX);
+        try {
+            long sourceSize = Files.size(path);
+            long sourceTime = Files.getLastModifiedTime(path).toMillis();
+            if(Files.exists(cachePath)) {
+                Instance instance = read(name, path, cachePath, sourceSize, sourceTime, optimalK);
+                if(instance != null) return instance;
+                Log.debugLog(name, "Cache is stale, rebuilding it");
+            }
+            // The preprocessing reduces the graph of the instance, so it works on a copy
+            Graph graph = EdgeListParser.parseFile(path);
+            Instance instance = new Instance(name, graph.copy(), optimalK);
+            Preprocessing.preprocess(instance);
+            write(instance, graph, cachePath, sourceSize, sourceTime, checksum(path));
+            return instance;
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't load file '" + name + "'", e);
+        }
+    }
+
+    private static long checksum(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * @return The instance, or null if the cache doesn't match the input or is damaged.
+     */
+    private static Instance read(String name, Path path, Path cachePath, long sourceSize, long sourceTime, int optimalK) throws IOException {
+        Instance instance;
+        byte[] retimed = null; // The cache with the new time of the input, if only the time changed
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size < 44 || size % 4 != 0) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // Header
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return null;
+            if(buffer.getLong(8) != sourceSize || buffer.getInt(32) != optimalK) return null;
+            boolean sameTime = buffer.getLong(16) == sourceTime;
+            if(!sameTime && buffer.getLong(24) != checksum(path)) return null;
+
+            // Checksum over everything before the last 8 bytes
+            CRC32 crc = new CRC32();
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit((int) size - 8);
+            crc.update(payload);
+            if(buffer.getLong((int) size - 8) != crc.getValue()) return null;
+
+            if(!sameTime) {
+                retimed = new byte[(int) size];
+                buffer.duplicate().get(retimed);
+            }
+
+            buffer.position(36);
+            IntBuffer ints = buffer.slice().asIntBuffer();
+            instance = new Instance(name, readGraph(ints), optimalK);
+            instance.preprocessedS = new ArrayList<>();
+            int removedCount = ints.get();
+            for(int i = 0; i < removedCount; i++) instance.preprocessedS.add(ints.get());
+            int subGraphCount = ints.get();
+            List<Graph> subGraphs = new ArrayList<>(subGraphCount);
+            for(int i = 0; i < subGraphCount; i++) subGraphs.add(readGraph(ints));
+            instance.subGraphs = subGraphs;
+        }
+        if(retimed != null) writeTime(name, retimed, cachePath, sourceTime);
+        return instance;
+    }
+
+    /**
+     * Stores the new modification time of the unchanged input in the cache, with the checksum of the cache updated.
+     * Written like the cache, the rewrite is optional too.
+     * @param bytes The content of the cache.
+     */
+    private static void writeTime(String name, byte[] bytes, Path cachePath, long sourceTime) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putLong(16, sourceTime);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        buffer.putLong(bytes.length - 8, crc.getValue());
+        Path tempPath = Paths.get(cachePath + ".tmp");
+        try {
+            Files.write(tempPath, bytes);
+            Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.debugLog(name, "Couldn't update cache: " + e.getMessage());
+        }
+    }
+
+    private static Graph readGraph(IntBuffer ints) {
+        int n = ints.get();
+        int m = ints.get();
+        int[] ids = readInts(ints, n);
+        int[] outOffsets = readInts(ints, n + 1);
+        int[] outTargets = readInts(ints, m);
+        int[] inOffsets = readInts(ints, n + 1);
+        int[] inTargets = readInts(ints, m);
+        return new Graph(ids, outOffsets, outTargets, inOffsets, inTargets);
+    }
+
+    private static int[] readInts(IntBuffer ints, int length) {
+        int[] array = new int[length];
+        ints.get(array);
+        return array;
+    }
+
+    /**
+     * Writes the cache to a temporary file first and moves it, so a concurrent reader never sees a partial file.
+     * A failed write is only logged, the cache is optional.
+     */
+    private static void write(Instance instance, Graph graph, Path cachePath, long sourceSize, long sourceTime, long sourceChecksum) {
+        Path tempPath = Paths.get(cachePath + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Files.newOutputStream(tempPath), crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceTime);
+            out.writeLong(sourceChecksum);
+            out.writeInt(instance.OPTIMAL_K);
+            writeGraph(out, graph);
+            out.writeInt(instance.preprocessedS.size());
+            for(int id: instance.preprocessedS) out.writeInt(id);
+            out.writeInt(instance.subGraphs.size());
+            for(Graph subGraph: instance.subGraphs) writeGraph(out, subGraph);
+            out.flush();
+            out.writeLong(crc.getValue());
+        } catch (IOException e) {
+            Log.debugLog(instance.NAME, "Couldn't write cache: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.debugLog(instance.NAME, "Couldn't write cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a graph without removed nodes or added arcs, its sorted neighbor rows are the compressed sparse rows.
+     */
+    private static void writeGraph(DataOutputStream out, Graph graph) throws IOException {
+        int n = graph.getCapacity();
+        int m = graph.getEdgeCount();
+        out.writeInt(n);
+        out.writeInt(m);
+        for(int v = 0; v < n; v++) out.writeInt(graph.getId(v));
+        int[] buffer = new int[n];
+        writeRows(out, graph, buffer, true);
+        writeRows(out, graph, buffer, false);
+    }
+
+    private static void writeRows(DataOutputStream out, Graph graph, int[] buffer, boolean outArcs) throws IOException {
+        int n = graph.getCapacity();
+        int offset = 0;
+        out.writeInt(offset);
+        for(int v = 0; v < n; v++) {
+            offset += outArcs ? graph.getOutDegree(v) : graph.getInDegree(v);
+            out.writeInt(offset);
+        }
+        for(int v = 0; v < n; v++) {
+            int count = outArcs ? graph.getOutIds(v, buffer) : graph.getInIds(v, buffer);
+            for(int i = 0; i < count; i++) out.writeInt(buffer[i]);
+        }
+    }
+}
@@ -1,16 +1,16 @@
 package program.utils;
 
 import program.model.Graph;
+import program.model.GraphBuilder;
 import program.log.Log;
 import program.model.GraphFile;
 import program.model.Instance;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Stream;
 
 public abstract class InstanceCreator {
 
@@ -29,7 +29,7 @@ public abstract class InstanceCreator {
 
     public static Map<String, Integer> optimalKMap = new HashMap<>();
 
-    public static int readOptimalKFromFile(String graphName){
+    public static synchronized int readOptimalKFromFile(String graphName){
         if(optimalKMap.isEmpty()) {
             try{
                 Scanner scan = new Scanner(new File("src/inputs/" + DATASET + "/optimal_solution_sizes.txt"));
@@ -50,25 +50,9 @@ public abstract class InstanceCreator {
     }
 
     public static Instance createFromFile(GraphFile file){
-        Graph graph = new Graph();
-
-        try (Stream<String> stream = Files.lines(Paths.get(file.path + file.name))) {
-            stream.forEach(str -> {
-                if(str.startsWith("#")) return;
-                if(str.startsWith("%")) return;
-
-                //Add Line
-                String[] split = str.trim().split(" ");
-                try {
-                    Integer nodeId1 = Integer.parseInt(split[0]);
-                    Integer nodeId2 = Integer.parseInt(split[1]);
-                    graph.addArc(nodeId1, nodeId2);
-                }
-                catch (NumberFormatException e)
-                {
-                    throw new RuntimeException("Couldn't parse file '" + file.name + "' to Integer");
-                }
-            });
+        Graph graph = null;
+        try {
+            graph = EdgeListParser.parseFile(Paths.get(file.path + file.name));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -76,6 +60,25 @@ public abstract class InstanceCreator {
         return createInstance(file.name, graph);
     }
 
+    /**
+     * Creates the instance from an edge list on the stream, the optimal k is unknown.
+     */
+    public static Instance createFromStream(InputStream stream, String name){
+        try {
+            return new Instance(name, EdgeListParser.parseStream(stream, name), -1);
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Like createFromFile(), but the instance is preprocessed and kept in a binary cache next to the file,
+     * so repeated runs skip the parsing and the initial reductions.
+     */
+    public static Instance createFromCache(GraphFile file){
+        return GraphCache.load(Paths.get(file.path + file.name), readOptimalKFromFile(file.name));
+    }
+
     public static List<GraphFile> getErrorFilesDataset2() {
         List<GraphFile> files = new ArrayList<>();
 
@@ -127,6 +130,21 @@ public abstract class InstanceCreator {
         return files;
     }
 
+    /**
+     * Instances which are too large for the exact solver, for the local search mode.
+     */
+    public static List<GraphFile> getLargeFiles() {
+        List<GraphFile> files = new ArrayList<>();
+        files.add(new GraphFile(SYNTHETIC_PATH, "synth-n_4000-m_437663-k_200-p_0.05.txt"));
+        files.add(new GraphFile(COMPLEX_PATH, "ChicagoRegional-n_10000"));
+        files.add(new GraphFile(COMPLEX_PATH, "out.cfinder-google-n_10000"));
+        files.add(new GraphFile(COMPLEX_PATH, "chess-n_7303"));
+        files.add(new GraphFile(COMPLEX_PATH, "health-n_2542"));
+        files.add(new GraphFile(COMPLEX_PATH, "advotogo-n_5159"));
+        files.add(new GraphFile(COMPLEX_PATH, "wikispeedia-n_4181"));
+        return files;
+    }
+
     public static List<GraphFile> getSelectedFilesDataset2() {
         List<GraphFile> files = new ArrayList<>();
         files.add(new GraphFile(SYNTHETIC_PATH, "synth-n_100-m_670-k_30-p_0.1.txt"));
@@ -178,6 +196,7 @@ public abstract class InstanceCreator {
 
         List<GraphFile> files = new ArrayList<>();
         for (File listOfFile : listOfFiles) {
+            if(listOfFile.getName().contains(GraphCache.SUFFIX)) continue;
             files.add(new GraphFile(path, listOfFile.getName()));
         }
         return files;
@@ -208,7 +227,7 @@ public abstract class InstanceCreator {
      * Creates a BFS test graph.
      */
     public static Instance createBFSTest1(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
@@ -219,14 +238,14 @@ public abstract class InstanceCreator {
         graph.addArc(5, 6);
         graph.addArc(6, 3);
 
-        return createTestInstance("bfs_test_1", graph, 1);
+        return createTestInstance("bfs_test_1", graph.build(), 1);
     }
 
     /**
      * Creates a BFS test graph.
      */
     public static Instance createBFSTest2(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
@@ -240,14 +259,14 @@ public abstract class InstanceCreator {
         graph.addArc(5, 7);
         graph.addArc(7, 5);
 
-        return createTestInstance("bfs_test_1", graph, 1);
+        return createTestInstance("bfs_test_1", graph.build(), 1);
     }
 
     /**
      * Creates a simple acyclic graph.
      */
     public static Instance createSimpleDAG(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(1, 3);
@@ -255,14 +274,14 @@ public abstract class InstanceCreator {
         graph.addArc(2, 5);
         graph.addArc(3, 4);
 
-        return createTestInstance("simple_n4_m5_k0", graph, 0);
+        return createTestInstance("simple_n4_m5_k0", graph.build(), 0);
     }
 
     /**
      * Creates a simple acyclic graph.
      */
     public static Instance createSimpleNonDAG1(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(1, 3);
@@ -273,14 +292,14 @@ public abstract class InstanceCreator {
         graph.addArc(5, 6);
         graph.addArc(6, 5);
 
-        return createTestInstance("simple-n6_m8_k2", graph, 2);
+        return createTestInstance("simple-n6_m8_k2", graph.build(), 2);
     }
 
     /**
      * Creates graph with circle A-B-C.
      */
     public static Instance createSimpleNonDAG2(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
@@ -289,7 +308,7 @@ public abstract class InstanceCreator {
         graph.addArc(2, 5);
         graph.addArc(3, 6);
 
-        return createTestInstance("simple_n6_m6_k1", graph, 1);
+        return createTestInstance("simple_n6_m6_k1", graph.build(), 1);
     }
 
 
@@ -297,7 +316,7 @@ public abstract class InstanceCreator {
      * Creates graph with circles A-B-C and E-F-G.
      */
     public static Instance createSimpleNonDAG3(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
@@ -308,7 +327,7 @@ public abstract class InstanceCreator {
         graph.addArc(6, 7);
         graph.addArc(7, 5);
 
-        return createTestInstance("simple-n7_m8_k2", graph, 2);
+        return createTestInstance("simple-n7_m8_k2", graph.build(), 2);
     }
 
 
@@ -316,7 +335,7 @@ public abstract class InstanceCreator {
      * Creates graph with circles A-B-C and E-F-G, but the circles are connected.
      */
     public static Instance createSimpleNonDAG4(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
@@ -325,14 +344,14 @@ public abstract class InstanceCreator {
         graph.addArc(4, 5);
         graph.addArc(5, 1);
 
-        return createTestInstance("simple-n5_m6_k1", graph, 1);
+        return createTestInstance("simple-n5_m6_k1", graph.build(), 1);
     }
 
     /**
      * Creates a graph of 3 fully connected tuples.
      */
     public static Instance createSimpleNonDAG5(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 1);
@@ -341,14 +360,14 @@ public abstract class InstanceCreator {
         graph.addArc(5, 6);
         graph.addArc(6, 5);
 
-        return createTestInstance("simple-n6_m6_k3", graph, 3);
+        return createTestInstance("simple-n6_m6_k3", graph.build(), 3);
     }
 
     /**
      *
      */
     public static Instance createSimpleNonDAG6(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 1);
@@ -372,14 +391,14 @@ public abstract class InstanceCreator {
         graph.addArc(0, 7);
         graph.addArc(7, 0);
 
-        return createTestInstance("simple-n7_m12_k3", graph, 3);
+        return createTestInstance("simple-n7_m12_k3", graph.build(), 3);
     }
 
     /**
      *
      */
     public static Instance createSimpleNonDAG7(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(0, 1);
         graph.addArc(3, 0);
@@ -398,14 +417,14 @@ public abstract class InstanceCreator {
         graph.addArc(1, 4);
         graph.addArc(4, 1);
 
-        return createTestInstance("simple-n6_m6_k3", graph, 3);
+        return createTestInstance("simple-n6_m6_k3", graph.build(), 3);
     }
 
     /**
      * Creates a fully connected graph with 3 nodes.
      */
     public static Instance createFullConnected3(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(1, 3);
@@ -414,14 +433,14 @@ public abstract class InstanceCreator {
         graph.addArc(3, 1);
         graph.addArc(3, 2);
 
-        return createTestInstance("full-n3_m6_k2", graph, 2);
+        return createTestInstance("full-n3_m6_k2", graph.build(), 2);
     }
 
     /**
      * Creates a fully connected graph with 3 nodes.
      */
     public static Instance createFullConnected4(){
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(1, 3);
@@ -436,14 +455,14 @@ public abstract class InstanceCreator {
         graph.addArc(4, 2);
         graph.addArc(4, 3);
 
-        return createTestInstance("full-n4_m12_k3", graph, 3);
+        return createTestInstance("full-n4_m12_k3", graph.build(), 3);
     }
 
     /**
      * Creates a simple graph for testing the BFS.
      */
     public static Instance createBFSDAG1() {
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(1, 3);
@@ -455,21 +474,21 @@ public abstract class InstanceCreator {
         graph.addArc(6, 1);
         graph.addArc(7, 1);
 
-        return createTestInstance("bfs-n7_m9_k1", graph, 1);
+        return createTestInstance("bfs-n7_m9_k1", graph.build(), 1);
     }
 
     /**
      * Creates a simple graph for testing the BFS.
      */
     public static Instance createBFSDAG2() {
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
         graph.addArc(3, 4);
         graph.addArc(4, 2);
 
-        return createTestInstance("bfs-n4_m4_k1", graph, 1);
+        return createTestInstance("bfs-n4_m4_k1", graph.build(), 1);
     }
 
     /**
@@ -477,7 +496,7 @@ public abstract class InstanceCreator {
      * The BFS should find the circle B-C.
      */
     public static Instance createBFSDAG3() {
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 3);
@@ -485,11 +504,11 @@ public abstract class InstanceCreator {
         graph.addArc(4, 1);
         graph.addArc(3, 2);
 
-        return createTestInstance("bfs-n4_m5_k1", graph, 1);
+        return createTestInstance("bfs-n4_m5_k1", graph.build(), 1);
     }
 
     public static Instance createFlower1() {
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(1, 0);
@@ -497,11 +516,11 @@ public abstract class InstanceCreator {
         graph.addArc(2, 1);
         graph.addArc(0, 3);
 
-        return createTestInstance("flower1", graph, 1);
+        return createTestInstance("flower1", graph.build(), 1);
     }
 
     public static Instance createFlower2() {
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 1);
@@ -512,11 +531,11 @@ public abstract class InstanceCreator {
         graph.addArc(1, 4);
         graph.addArc(4, 1);
 
-        return createTestInstance("flower2", graph, 1);
+        return createTestInstance("flower2", graph.build(), 1);
     }
 
     public static Instance createFlower3() {
-        Graph graph = new Graph();
+        GraphBuilder graph = new GraphBuilder();
 
         graph.addArc(1, 2);
         graph.addArc(2, 1);
@@ -531,6 +550,6 @@ public abstract class InstanceCreator {
         graph.addArc(5, 6);
         graph.addArc(6, 4);
 
-        return createTestInstance("flower3", graph, 1);
+        return createTestInstance("flower3", graph.build(), 1);
     }
 }
@@ -1,77 +1,168 @@
 package program.utils;
 
-import program.algo.Solver;
 import program.log.Log;
 
-public abstract class PerformanceTimer {
+import java.util.concurrent.atomic.AtomicLong;
 
-    private static long startTime;
+public class PerformanceTimer {
 
-    private static long millisPreprocessing = 0;
-    private static long millisFlowers = 0;
-    private static long millisBFS = 0;
-    private static long millisDAG = 0;
-    private static long millisCopy = 0;
-    private static long millisReduction = 0;
-    private static long millisPacking = 0;
+    // Per thread, so the parallel branching can measure its own sections
+    private final ThreadLocal<long[]> startTime = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final AtomicLong millisPreprocessing = new AtomicLong();
+    private final AtomicLong millisFlowers = new AtomicLong();
+    private final AtomicLong millisBFS = new AtomicLong();
+    private final AtomicLong millisDAG = new AtomicLong();
+    private final AtomicLong millisTrail = new AtomicLong();
+    private final AtomicLong millisReduction = new AtomicLong();
+    private final AtomicLong millisPacking = new AtomicLong();
+    private final AtomicLong millisHeuristic = new AtomicLong();
+    private final AtomicLong millisDecomposition = new AtomicLong();
+    private final AtomicLong millisPIE = new AtomicLong();
+    private final AtomicLong millisCORE = new AtomicLong();
+    private final AtomicLong millisDOME = new AtomicLong();
+    private final AtomicLong millisVertexCover = new AtomicLong();
+
+    // Reduction rules: removed arcs (PIE, DOME) or nodes (CORE, flowers), packings lifted above k by the local search
+    private final AtomicLong hitsFlowers = new AtomicLong();
+    private final AtomicLong hitsPacking = new AtomicLong();
+    private final AtomicLong hitsPIE = new AtomicLong();
+    private final AtomicLong hitsCORE = new AtomicLong();
+    private final AtomicLong hitsDOME = new AtomicLong();
+
+    // Transposition table
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
 
     public enum MethodType {
         PREPROCESSING,
         FLOWERS,
         BFS,
         DAG,
-        COPY,
+        TRAIL,
         REDUCTION,
-        PACKING
+        PACKING,
+        HEURISTIC,
+        DECOMPOSITION,
+        PIE,
+        CORE,
+        DOME,
+        VERTEX_COVER
     }
 
-    public static void start() {
-        startTime = System.nanoTime();
+    public void start() {
+        startTime.get()[0] = System.nanoTime();
     }
 
-    public static void log(MethodType type) {
-        long millis = System.nanoTime() - startTime;
+    public void log(MethodType type) {
+        add(type, System.nanoTime() - startTime.get()[0]);
+    }
+
+    /**
+     * Adds a time measured by the caller, for sections inside of other measured sections.
+     */
+    public void add(MethodType type, long millis) {
         switch (type) {
             case PREPROCESSING:
-                millisPreprocessing += millis;
+                millisPreprocessing.addAndGet(millis);
                 break;
             case FLOWERS:
-                millisFlowers += millis;
+                millisFlowers.addAndGet(millis);
                 break;
             case BFS:
-                millisBFS += millis;
+                millisBFS.addAndGet(millis);
                 break;
             case DAG:
-                millisDAG += millis;
+                millisDAG.addAndGet(millis);
                 break;
-            case COPY:
-                millisCopy += millis;
+            case TRAIL:
+                millisTrail.addAndGet(millis);
                 break;
             case REDUCTION:
-                millisReduction += millis;
+                millisReduction.addAndGet(millis);
+                break;
+            case PACKING:
+                millisPacking.addAndGet(millis);
+                break;
+            case HEURISTIC:
+                millisHeuristic.addAndGet(millis);
+                break;
+            case DECOMPOSITION:
+                millisDecomposition.addAndGet(millis);
+                break;
+            case PIE:
+                millisPIE.addAndGet(millis);
+                break;
+            case CORE:
+                millisCORE.addAndGet(millis);
+                break;
+            case DOME:
+                millisDOME.addAndGet(millis);
+                break;
+            case VERTEX_COVER:
+                millisVertexCover.addAndGet(millis);
+                break;
+        }
+    }
+
+    public void logHits(MethodType type, int hits) {
+        switch (type) {
+            case FLOWERS:
+                hitsFlowers.addAndGet(hits);
                 break;
             case PACKING:
-                millisPacking += millis;
+                hitsPacking.addAndGet(hits);
+                break;
+            case PIE:
+                hitsPIE.addAndGet(hits);
+                break;
+            case CORE:
+                hitsCORE.addAndGet(hits);
+                break;
+            case DOME:
+                hitsDOME.addAndGet(hits);
                 break;
         }
     }
 
-    public static long getPackingMillis() {
-        return millisPacking / 1000000;
+    public void logLookup(boolean hit) {
+        lookups.incrementAndGet();
+        if(hit) hits.incrementAndGet();
+    }
+
+    public long getPackingMillis() {
+        return millisPacking.get() / 1000000;
     }
 
-    public static void printResult() {
-        Log.debugLog(Solver.instance.NAME, "Preprocessing: " + millisPreprocessing / 1000000 + " ms, Flowers: " + millisFlowers / 1000000 + " ms, BFS: " + millisBFS / 1000000 +
-        " ms, DAG: " + millisDAG / 1000000 + " ms, Copy: " + millisCopy / 1000000 + " ms, Reduction: " + millisReduction / 1000000 + " ms, Packing: " + millisPacking / 1000000 + " ms");
+    public void printResult(String name) {
+        Log.debugLog(name, "Preprocessing: " + millisPreprocessing.get() / 1000000 + " ms, Flowers: " + millisFlowers.get() / 1000000 + " ms (" + hitsFlowers.get() + " nodes), BFS: " + millisBFS.get() / 1000000 +
+        " ms, DAG: " + millisDAG.get() / 1000000 + " ms, Trail: " + millisTrail.get() / 1000000 + " ms, Reduction: " + millisReduction.get() / 1000000 + " ms, Packing: " + millisPacking.get() / 1000000 +
+        " ms (" + hitsPacking.get() + " lifted), Heuristic: " + millisHeuristic.get() / 1000000 + " ms, Decomposition: " + millisDecomposition.get() / 1000000 +
+        " ms, PIE: " + millisPIE.get() / 1000000 + " ms (" + hitsPIE.get() + " arcs), CORE: " + millisCORE.get() / 1000000 + " ms (" + hitsCORE.get() + " nodes), DOME: " + millisDOME.get() / 1000000 +
+        " ms (" + hitsDOME.get() + " arcs), Vertex cover: " + millisVertexCover.get() / 1000000 + " ms, Transposition hits: " + hits.get() + " / " + lookups.get() +
+        " (" + ((lookups.get() > 0) ? 100 * hits.get() / lookups.get() : 0) + "%)");
     }
 
-    public static void reset() {
-        millisPreprocessing = 0;
-        millisFlowers = 0;
-        millisBFS = 0;
-        millisDAG = 0;
-        millisCopy = 0;
-        millisReduction = 0;
-        millisPacking = 0;
+    public void reset() {
+        millisPreprocessing.set(0);
+        millisFlowers.set(0);
+        millisBFS.set(0);
+        millisDAG.set(0);
+        millisTrail.set(0);
+        millisReduction.set(0);
+        millisPacking.set(0);
+        millisHeuristic.set(0);
+        millisDecomposition.set(0);
+        millisPIE.set(0);
+        millisCORE.set(0);
+        millisDOME.set(0);
+        millisVertexCover.set(0);
+        hitsFlowers.set(0);
+        hitsPacking.set(0);
+        hitsPIE.set(0);
+        hitsCORE.set(0);
+        hitsDOME.set(0);
+        lookups.set(0);
+        hits.set(0);
     }
 }
@@ -1,30 +1,41 @@
 package program.utils;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+public class Timer {
 
-public abstract class Timer {
+    public static final long timeout = 90; // default in seconds
 
-    private static LocalDateTime startTime;
+    private final long timeoutNanos;
+    private long startTime;
 
-    public static final long timeout = 90; // in seconds
+    public Timer() {
+        this(timeout);
+    }
+
+    public Timer(long timeoutSeconds) {
+        this.timeoutNanos = timeoutSeconds * 1000000000L;
+        this.startTime = System.nanoTime();
+    }
 
-    public static void start() {
-        startTime = LocalDateTime.now();
+    public void start() {
+        startTime = System.nanoTime();
     }
 
-    public static Long stop(){
+    public Long stop(){
         Long time = getMillis();
-        startTime = LocalDateTime.now();
+        startTime = System.nanoTime();
         return time;
     }
 
-    public static boolean isTimeout() {
-        return ChronoUnit.SECONDS.between(startTime, LocalDateTime.now()) >= timeout;
+    public boolean isTimeout() {
+        return System.nanoTime() - startTime >= timeoutNanos;
+    }
+
+    public long getTimeout() {
+        return timeoutNanos / 1000000000L;
     }
 
-    public static long getMillis() {
-        return ChronoUnit.MILLIS.between(startTime, LocalDateTime.now());
+    public long getMillis() {
+        return (System.nanoTime() - startTime) / 1000000;
     }
 
     public static String format(Long millis) {